@@ -0,0 +1,264 @@
+package backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of generations in flight and adapts the cap to what the
+ * server sustains. Every finished request is a sample of time to first
+ * token (TTFT) and decode speed:
+ * - TTFT well above its unloaded baseline means requests queue inside the
+ *   server, so the limit shrinks with the ratio (a gradient);
+ * - aggregate tokens/sec that stopped growing with more concurrency means
+ *   the server is saturated, so the limit steps back as fast as it grows;
+ * - otherwise, if callers were waiting, the limit grows by 1/limit per
+ *   sample, about one per round of requests (additive increase);
+ * - a failed request halves it.
+ * Decreases happen at most once per round of requests.
+ * Waiting callers, blocking or asynchronous, are admitted in arrival order.
+ */
+public final class AdaptiveLimiter {
+    private static final double TOLERANCE = 2.0; // TTFT may double before we back off
+    private static final double SHORT_WEIGHT = 0.3;
+    private static final double LONG_WEIGHT = 0.02;
+    private static final double BEST_DECAY = 0.995; // forget old peaks as load changes
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int minLimit;
+    private int maxLimit;
+    private int inFlight = 0;
+    private double shortTtft = -1;
+    private double longTtft = -1;
+    private double bestThroughput = 0;
+    private int bestConcurrency = 0;
+    private long lastDecrease = 0; // nanoTime of the last multiplicative decrease
+    private double meanLatency = -1; // admission to release of successful requests
+
+    public AdaptiveLimiter(int initial, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initial));
+    }
+
+    /**
+     * Waits for a slot. The permit must be released exactly once.
+     */
+    public Permit acquire() throws InterruptedException {
+        CompletableFuture<Permit> future = acquireAsync();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                future.join().release(true); // admitted while we were interrupted
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Completes with a permit once a slot is free, without holding a
+     * thread meanwhile. Cancelling the future gives up the place in line.
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(inFlight, false));
+            }
+            CompletableFuture<Permit> future = new CompletableFuture<>();
+            waiters.add(future);
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called under lock; the futures are completed by the caller after unlocking
+    private List<CompletableFuture<Permit>> admit(List<Permit> permits) {
+        List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            CompletableFuture<Permit> waiter = waiters.poll();
+            if (waiter.isCancelled()) {
+                continue;
+            }
+            inFlight++;
+            admitted.add(waiter);
+            permits.add(new Permit(inFlight, true));
+        }
+        return admitted;
+    }
+
+    private static void complete(List<CompletableFuture<Permit>> admitted, List<Permit> permits) {
+        for (int i = 0; i < admitted.size(); i++) {
+            if (!admitted.get(i).complete(permits.get(i))) {
+                permits.get(i).release(true); // cancelled meanwhile
+            }
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough time a request queued behind ahead others would wait for a
+     * slot: the rounds of requests before it times the mean request
+     * latency. 0 until a request has finished.
+     */
+    public long estimatedWaitNanos(int ahead) {
+        lock.lock();
+        try {
+            if (meanLatency < 0) {
+                return 0;
+            }
+            double rounds = Math.max(0, inFlight + waiters.size() + ahead + 1 - limit) / limit;
+            return (long) (rounds * meanLatency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setBounds(int min, int max) {
+        List<Permit> permits = new ArrayList<>();
+        List<CompletableFuture<Permit>> admitted;
+        lock.lock();
+        try {
+            minLimit = Math.max(1, min);
+            maxLimit = Math.max(minLimit, max);
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+            admitted = admit(permits);
+        } finally {
+            lock.unlock();
+        }
+        complete(admitted, permits);
+    }
+
+    private void release(Permit permit, boolean succeeded) {
+        List<Permit> permits = new ArrayList<>();
+        List<CompletableFuture<Permit>> admitted;
+        lock.lock();
+        try {
+            inFlight--;
+            if (!succeeded) {
+                decrease(permit, 0.5);
+            } else if (permit.firstTokenNanos > 0) {
+                sample(permit);
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+            admitted = admit(permits);
+        } finally {
+            lock.unlock();
+        }
+        complete(admitted, permits);
+    }
+
+    // called under lock with a successful, timed request
+    private void sample(Permit permit) {
+        double latency = System.nanoTime() - permit.start;
+        meanLatency = meanLatency < 0 ? latency : meanLatency + SHORT_WEIGHT * (latency - meanLatency);
+
+        double ttft = permit.firstTokenNanos;
+        shortTtft = shortTtft < 0 ? ttft : shortTtft + SHORT_WEIGHT * (ttft - shortTtft);
+        // the baseline follows drops at once and rises slowly, so it tracks the unloaded server
+        longTtft = longTtft < 0 ? ttft : Math.min(ttft, longTtft + LONG_WEIGHT * (ttft - longTtft));
+
+        // tokens/sec of this request, waiting included, times the concurrency it ran at
+        double throughput = permit.tokens * 1e9 / (permit.firstTokenNanos + permit.decodeNanos)
+                * permit.concurrency;
+        bestThroughput *= BEST_DECAY;
+        if (throughput > bestThroughput) {
+            bestThroughput = throughput;
+            bestConcurrency = permit.concurrency;
+        }
+
+        double gradient = Math.min(1.0, TOLERANCE * longTtft / shortTtft);
+        if (gradient < 1.0) {
+            decrease(permit, Math.max(0.5, gradient));
+        } else if (permit.concurrency > bestConcurrency
+                && throughput < 0.9 * bestThroughput) {
+            limit = limit - 1.0 / limit;
+        } else if (permit.queued || !waiters.isEmpty()) {
+            limit = limit + 1.0 / limit;
+        }
+    }
+
+    /*
+     * Multiplicative decrease, at most once per round: requests admitted
+     * before the last decrease saw the old limit and say nothing new
+     */
+    private void decrease(Permit permit, double factor) {
+        if (permit.start > lastDecrease) {
+            limit = limit * factor;
+            lastDecrease = System.nanoTime();
+        }
+    }
+
+    /**
+     * One admitted request. The caller reports the first token and each
+     * token, then releases it when the stream ends, fails or is closed.
+     */
+    public final class Permit {
+        private final int concurrency; // requests in flight including this one, at admission
+        private final boolean queued; // whether this request had to wait
+        private final long start = System.nanoTime();
+        private long firstTokenNanos = 0;
+        private long decodeNanos = 0;
+        private int tokens = 0;
+        private boolean released = false;
+
+        private Permit(int concurrency, boolean queued) {
+            this.concurrency = concurrency;
+            this.queued = queued;
+        }
+
+        public void onToken() {
+            long now = System.nanoTime();
+            if (tokens++ == 0) {
+                firstTokenNanos = now - start;
+            } else {
+                decodeNanos = now - start - firstTokenNanos;
+            }
+        }
+
+        public synchronized void release(boolean succeeded) {
+            if (!released) {
+                released = true;
+                AdaptiveLimiter.this.release(this, succeeded);
+            }
+        }
+    }
+}
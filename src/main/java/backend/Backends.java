@@ -0,0 +1,171 @@
+package backend;
+
+import metrics.Stats;
+import ollama.GenerateRequest;
+import ollama.OllamaClient;
+import ollama.SharedGeneration;
+import ollama.Termination;
+import ollama.TokenData;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The backend every caller goes through, Ollama unless llm:set-backend
+ * chose another. Generation requests enter here, so behavior that does
+ * not depend on the server (deduplication, the adaptive concurrency
+ * limit, the llm.Generate event and generate.* stats) is implemented once.
+ */
+public final class Backends {
+    private static volatile LLMBackend current = OllamaClient.getInstance();
+    private static volatile int epoch = 0;
+    private static final Map<String, SharedGeneration> inFlight = new ConcurrentHashMap<>();
+    private static final AdaptiveLimiter limiter = new AdaptiveLimiter(
+            4, 1, Integer.getInteger("llm.max-concurrency", 32));
+
+    private Backends() {
+    }
+
+    public static LLMBackend get() {
+        return current;
+    }
+
+    /**
+     * Switches the backend. Vectors embedded before are not comparable with
+     * the new backend's, which callers holding vectors detect via epoch.
+     */
+    public static void set(LLMBackend backend) {
+        synchronized (Backends.class) {
+            current = backend;
+            epoch++;
+        }
+    }
+
+    /**
+     * Counts backend changes.
+     */
+    public static int epoch() {
+        return epoch;
+    }
+
+    public static AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    public static Stream<TokenData> ask(GenerateRequest request) throws Exception {
+        LLMBackend backend = current;
+        if (request.isDeduplicate()) {
+            return singleFlight(backend, request);
+        }
+        return limited(backend, request);
+    }
+
+    /**
+     * Non-blocking counterpart of ask: the request waits for a limiter slot
+     * without a thread and streams its tokens as the subscriber requests
+     * them. Deduplicated requests share a blocking stream, so callers that
+     * set dedup use ask instead.
+     */
+    public static Flow.Publisher<TokenData> generateAsync(GenerateRequest request) {
+        return new LimitedPublisher(limiter, current, request);
+    }
+
+    /*
+     * Generates once a limiter slot is free and holds the slot until the
+     * stream ends or is closed, feeding the limiter the token timings
+     */
+    private static Stream<TokenData> limited(LLMBackend backend, GenerateRequest request) throws Exception {
+        GenerateTrace trace = new GenerateTrace(backend, request);
+        AdaptiveLimiter.Permit permit;
+        try {
+            permit = limiter.acquire();
+        } catch (InterruptedException e) {
+            trace.end(false);
+            throw e;
+        }
+        trace.admitted();
+        Stream<TokenData> tokens;
+        try {
+            tokens = backend.generate(request);
+        } catch (Exception e) {
+            permit.release(false);
+            trace.end(false);
+            throw e;
+        }
+        Iterator<TokenData> source = tokens.iterator();
+        Termination.Cutter cutter = request.getTermination().isClientSide()
+                ? request.getTermination().newCutter()
+                : null;
+        Iterator<TokenData> iterator = new Iterator<>() {
+            private boolean cut = false; // ended early at a termination boundary
+
+            @Override
+            public boolean hasNext() {
+                if (cut) {
+                    return false;
+                }
+                try {
+                    boolean more = source.hasNext();
+                    if (!more) {
+                        permit.release(true);
+                        trace.end(true);
+                    }
+                    return more;
+                } catch (RuntimeException e) {
+                    permit.release(false);
+                    trace.end(false);
+                    throw e;
+                }
+            }
+
+            @Override
+            public TokenData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                permit.onToken();
+                trace.token();
+                TokenData token = source.next();
+                int keep = cutter == null ? -1 : cutter.cut(token.getToken());
+                if (keep < 0) {
+                    return token;
+                }
+                // boundary reached: stop reading, which aborts the request and frees the slot
+                cut = true;
+                permit.release(true);
+                trace.end(true);
+                tokens.close();
+                Stats.count("generate.cut", 1);
+                return new TokenData(token.getToken().substring(0, keep), token.getContext());
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    permit.release(true);
+                    trace.end(true);
+                    tokens.close();
+                });
+    }
+
+    /*
+     * Identical requests already in flight share one upstream stream instead
+     * of opening another connection; only valid under deterministic sampling
+     */
+    private static Stream<TokenData> singleFlight(LLMBackend backend, GenerateRequest request) {
+        // the messages only matter to backends without context tokens, but are part of the request all the same
+        String key = backend.name() + "\n" + request.toJson()
+                + (request.getMessages() == null ? "" : "\n" + request.getMessages());
+        SharedGeneration shared = inFlight.computeIfAbsent(key, k -> new SharedGeneration(
+                () -> limited(backend, request),
+                () -> inFlight.remove(k)));
+        return shared.subscribe();
+    }
+}
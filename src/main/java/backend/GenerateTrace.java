@@ -0,0 +1,57 @@
+package backend;
+
+import metrics.GenerateEvent;
+import metrics.Stats;
+import ollama.GenerateRequest;
+
+/*
+ * Measures one generation for the llm.Generate event and the generate.*
+ * stats, whichever backend and path it takes. Created when the request
+ * asks the limiter for a slot; times after that count from admission.
+ * Tokens arrive on one thread at a time, the end may race with them
+ */
+final class GenerateTrace {
+    private final GenerateEvent event = new GenerateEvent();
+    private final long created = System.nanoTime();
+    private long admitted;
+    private boolean ended = false; // guarded by this
+
+    GenerateTrace(LLMBackend backend, GenerateRequest request) {
+        event.begin();
+        event.backend = backend.name();
+        event.model = request.getModel(); // null for the backend's default
+        event.promptLength = request.getPrompt().length();
+    }
+
+    synchronized void admitted() {
+        admitted = System.nanoTime();
+        event.queueWait = admitted - created;
+        Stats.time("generate.queued", event.queueWait);
+    }
+
+    synchronized void token() {
+        if (!ended && event.tokens++ == 0) {
+            event.timeToFirstToken = System.nanoTime() - admitted;
+            Stats.time("generate.first-token", event.timeToFirstToken);
+        }
+    }
+
+    /*
+     * Commits the event once, when the stream ends, fails, is cut or is
+     * closed; requests that never got a slot count from their creation
+     */
+    synchronized void end(boolean succeeded) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        event.succeeded = succeeded;
+        event.end();
+        event.commit();
+        Stats.time("generate.total", System.nanoTime() - (admitted != 0 ? admitted : created));
+        Stats.count("generate.tokens", event.tokens);
+        if (!succeeded) {
+            Stats.count("generate.errors", 1);
+        }
+    }
+}
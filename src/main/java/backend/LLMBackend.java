@@ -0,0 +1,47 @@
+package backend;
+
+import ollama.GenerateRequest;
+import ollama.TokenData;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+
+/**
+ * A server that generates text and embeddings. Streams are lazy: tokens
+ * are read from the connection as the caller consumes them, and closing a
+ * stream aborts its request.
+ */
+public interface LLMBackend {
+    /**
+     * Short name used in logs and dedup keys, e.g. "ollama".
+     */
+    String name();
+
+    /**
+     * Streams the completion of a single prompt.
+     */
+    Stream<TokenData> generate(GenerateRequest request) throws Exception;
+
+    /**
+     * Streams the completion of a single prompt without blocking a thread:
+     * the request is sent when a subscriber arrives, tokens are pushed as
+     * the subscriber requests them, and cancelling aborts the request.
+     */
+    Flow.Publisher<TokenData> generateAsync(GenerateRequest request) throws Exception;
+
+    /**
+     * One vector per text, in input order.
+     */
+    List<float[]> embed(List<String> texts) throws Exception;
+
+    /**
+     * Aborts every request of this backend that is still streaming.
+     */
+    void cancelAll();
+
+    /**
+     * True if the server answers a cheap status request.
+     */
+    boolean isHealthy();
+}
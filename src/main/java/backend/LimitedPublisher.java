@@ -0,0 +1,173 @@
+package backend;
+
+import metrics.Stats;
+import ollama.GenerateRequest;
+import ollama.Termination;
+import ollama.TokenData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/*
+ * Subscribes to the backend once the limiter admits the request, and holds
+ * the permit until the stream completes, fails, is cancelled or reaches a
+ * client-side termination boundary, and traces it meanwhile. Demand and
+ * cancellation that arrive while the request is still queued are replayed
+ * on the real subscription
+ */
+final class LimitedPublisher implements Flow.Publisher<TokenData> {
+    private final AdaptiveLimiter limiter;
+    private final LLMBackend backend;
+    private final GenerateRequest request;
+
+    LimitedPublisher(AdaptiveLimiter limiter, LLMBackend backend, GenerateRequest request) {
+        this.limiter = limiter;
+        this.backend = backend;
+        this.request = request;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TokenData> subscriber) {
+        Termination termination = request.getTermination();
+        GenerateTrace trace = new GenerateTrace(backend, request);
+        Gate gate = new Gate(subscriber, termination.isClientSide() ? termination.newCutter() : null, trace);
+        subscriber.onSubscribe(gate);
+        CompletableFuture<AdaptiveLimiter.Permit> admission = limiter.acquireAsync();
+        gate.admission = admission;
+        admission.whenComplete((permit, error) -> {
+            if (permit == null) {
+                boolean cancelled = admission.isCancelled();
+                trace.end(cancelled);
+                if (!cancelled) {
+                    subscriber.onError(error);
+                }
+                return;
+            }
+            trace.admitted();
+            gate.permit = permit;
+            if (gate.cancelled) {
+                permit.release(true);
+                trace.end(true);
+                return;
+            }
+            try {
+                backend.generateAsync(request).subscribe(gate);
+            } catch (Exception e) {
+                permit.release(false);
+                trace.end(false);
+                subscriber.onError(e);
+            }
+        });
+    }
+
+    private static final class Gate implements Flow.Subscription, Flow.Subscriber<TokenData> {
+        private final Flow.Subscriber<? super TokenData> downstream;
+        private final Termination.Cutter cutter; // null without client-side termination
+        private final GenerateTrace trace;
+        private boolean cut = false; // upstream thread only
+        private volatile CompletableFuture<AdaptiveLimiter.Permit> admission;
+        private volatile AdaptiveLimiter.Permit permit;
+        private Flow.Subscription upstream; // guarded by this
+        private long pending = 0; // demand seen before upstream arrived, guarded by this
+        private volatile boolean cancelled = false;
+
+        Gate(Flow.Subscriber<? super TokenData> downstream, Termination.Cutter cutter, GenerateTrace trace) {
+            this.downstream = downstream;
+            this.cutter = cutter;
+            this.trace = trace;
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscription = upstream;
+                if (subscription == null) {
+                    pending = pending + n < 0 ? Long.MAX_VALUE : pending + n;
+                    return;
+                }
+            }
+            subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            CompletableFuture<AdaptiveLimiter.Permit> waiting = admission;
+            if (waiting != null) {
+                waiting.cancel(false); // gives up the place in line, if still queued
+            }
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            AdaptiveLimiter.Permit held = permit;
+            if (held != null) {
+                held.release(true);
+                trace.end(true);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            long replay;
+            synchronized (this) {
+                upstream = subscription;
+                replay = pending;
+                pending = 0;
+            }
+            if (cancelled) {
+                subscription.cancel();
+            } else if (replay > 0) {
+                subscription.request(replay);
+            }
+        }
+
+        @Override
+        public void onNext(TokenData token) {
+            if (cut) {
+                return;
+            }
+            permit.onToken();
+            trace.token();
+            int keep = cutter == null ? -1 : cutter.cut(token.getToken());
+            if (keep < 0) {
+                downstream.onNext(token);
+                return;
+            }
+            // boundary reached: abort the request, free the slot and end the stream here
+            cut = true;
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscription = upstream;
+            }
+            subscription.cancel();
+            permit.release(true);
+            trace.end(true);
+            Stats.count("generate.cut", 1);
+            downstream.onNext(new TokenData(token.getToken().substring(0, keep), token.getContext()));
+            downstream.onComplete();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!cut) {
+                permit.release(false);
+                trace.end(false);
+                downstream.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!cut) {
+                permit.release(true);
+                trace.end(true);
+                downstream.onComplete();
+            }
+        }
+    }
+}
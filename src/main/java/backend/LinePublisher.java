@@ -0,0 +1,286 @@
+package backend;
+
+import ollama.TokenData;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Streams a line-oriented HTTP response (Ollama NDJSON, OpenAI server-sent
+ * events) as tokens without a thread of its own. The request is sent with
+ * sendAsync when someone subscribes; body buffers are decoded as the
+ * client's selector thread delivers them, and the next buffer is only
+ * requested once the subscriber has demand for more tokens, so a slow
+ * subscriber slows the connection instead of filling memory.
+ * Single subscriber; decode returns null for lines that carry no token.
+ */
+public final class LinePublisher implements Flow.Publisher<TokenData> {
+    private final HttpClient client;
+    private final HttpRequest request;
+    private final Function<String, TokenData> decode;
+    private final Set<Live> open; // the backend's live streams, for cancelAll
+    private final AtomicInteger subscribed = new AtomicInteger();
+
+    /**
+     * A stream still running, as the backend sees it for cancelAll.
+     */
+    public interface Live {
+        /**
+         * Aborts the request and completes the subscriber with the tokens
+         * it already received, so whoever waits on the stream (limiter
+         * permit, session turn) is released.
+         */
+        void abort();
+    }
+
+    public LinePublisher(HttpClient client, HttpRequest request, Function<String, TokenData> decode,
+            Set<Live> open) {
+        this.client = client;
+        this.request = request;
+        this.decode = decode;
+        this.open = open;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TokenData> subscriber) {
+        if (subscribed.getAndIncrement() > 0) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("LinePublisher allows one subscriber"));
+            return;
+        }
+        Bridge bridge = new Bridge(subscriber);
+        open.add(bridge);
+        subscriber.onSubscribe(bridge);
+        bridge.response = client.sendAsync(request, info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromSubscriber(bridge, b -> "")
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        bridge.fail(error);
+                    } else if (response.statusCode() != 200) {
+                        bridge.fail(new IOException(
+                                "Backend failed (" + response.statusCode() + "): " + response.body()));
+                    }
+                });
+    }
+
+    /*
+     * Upstream subscriber of body buffers and downstream subscription at
+     * once. Signals from both sides meet in drain, which one thread at a
+     * time runs (work-in-progress counter)
+     */
+    private final class Bridge implements Flow.Subscriber<List<ByteBuffer>>, Flow.Subscription, Live {
+        private final Flow.Subscriber<? super TokenData> downstream;
+        private final Queue<TokenData> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder line = new StringBuilder(); // upstream thread only
+        private ByteBuffer carry = ByteBuffer.allocate(0); // bytes of a split character
+        private CharBuffer chars = CharBuffer.allocate(8192);
+
+        private volatile Flow.Subscription upstream;
+        private volatile CompletableFuture<?> response; // the exchange, until its body arrives
+        private volatile boolean requested = false; // a body buffer is on its way
+        private volatile boolean done = false;
+        private volatile Throwable error;
+        private volatile boolean cancelled = false;
+        private volatile boolean aborted = false; // by cancelAll, the subscriber still gets onComplete
+        private boolean terminated = false; // drain only
+
+        Bridge(Flow.Subscriber<? super TokenData> downstream) {
+            this.downstream = downstream;
+        }
+
+        // downstream side
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Demand must be positive"));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            open.remove(this);
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            open.remove(this);
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            CompletableFuture<?> exchange = response;
+            if (exchange != null) {
+                exchange.cancel(true); // still waiting for the response headers
+            }
+            drain();
+        }
+
+        // upstream side
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (cancelled || aborted) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                decode(buffer, false);
+            }
+            requested = false;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            decode(ByteBuffer.allocate(0), true);
+            if (line.length() > 0) {
+                emitLine(); // last line without a newline
+            }
+            done = true;
+            drain();
+        }
+
+        void fail(Throwable throwable) {
+            if (error == null) {
+                error = throwable;
+            }
+            done = true;
+            drain();
+        }
+
+        // upstream thread: bytes to characters to lines to tokens
+        private void decode(ByteBuffer buffer, boolean endOfInput) {
+            ByteBuffer input = buffer;
+            if (carry.hasRemaining()) {
+                input = ByteBuffer.allocate(carry.remaining() + buffer.remaining());
+                input.put(carry).put(buffer).flip();
+            }
+            while (true) {
+                CoderResult result = utf8.decode(input, chars, endOfInput);
+                chars.flip();
+                while (chars.hasRemaining()) {
+                    char c = chars.get();
+                    if (c == '\n') {
+                        emitLine();
+                    } else if (c != '\r') {
+                        line.append(c);
+                    }
+                }
+                chars.clear();
+                if (!result.isOverflow()) {
+                    break;
+                }
+            }
+            if (endOfInput) {
+                utf8.flush(chars);
+            }
+            carry = input.hasRemaining() ? ByteBuffer.allocate(input.remaining()).put(input).flip() : carry.clear().flip();
+        }
+
+        private void emitLine() {
+            String text = line.toString().trim();
+            line.setLength(0);
+            if (!text.isEmpty()) {
+                TokenData token = decode.apply(text);
+                if (token != null) {
+                    ready.add(token);
+                }
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (true) {
+                if (terminated || cancelled) {
+                    ready.clear();
+                } else if (aborted) {
+                    // tokens decoded but not yet requested are dropped with the rest of the reply
+                    terminated = true;
+                    ready.clear();
+                    downstream.onComplete();
+                } else {
+                    while (demand.get() > 0 && !ready.isEmpty() && !cancelled && !aborted) {
+                        downstream.onNext(ready.poll());
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                    }
+                    if (ready.isEmpty() && done) {
+                        terminated = true;
+                        open.remove(this);
+                        Throwable failure = error;
+                        if (failure != null) {
+                            downstream.onError(failure);
+                        } else {
+                            downstream.onComplete();
+                        }
+                    } else if (ready.isEmpty() && demand.get() > 0 && !requested) {
+                        Flow.Subscription subscription = upstream;
+                        if (subscription != null) {
+                            requested = true;
+                            subscription.request(1);
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package backend;
+
+import com.google.gson.*;
+import ollama.GenerateRequest;
+import ollama.Termination;
+import ollama.TokenData;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Backend for servers speaking the OpenAI HTTP API, such as the llama.cpp
+ * server or vLLM. Both batch concurrent requests on the server, which
+ * suits many short turtle turns. Streams are server-sent events. Requests
+ * that carry the conversation go to /chat/completions, bare prompts to
+ * /completions.
+ */
+public class OpenAICompatibleBackend implements LLMBackend {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private final String baseUrl; // e.g. http://localhost:8080/v1
+    private final String model;
+    private final String embedModel; // null or empty: no embeddings
+    private final String apiKey; // null for local servers
+    private final Set<InputStream> open = ConcurrentHashMap.newKeySet();
+    private final Set<LinePublisher.Live> openAsync = ConcurrentHashMap.newKeySet();
+
+    public OpenAICompatibleBackend(String baseUrl, String model, String embedModel, String apiKey) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.model = model;
+        this.embedModel = embedModel;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String name() {
+        return "openai:" + baseUrl;
+    }
+
+    @Override
+    public Stream<TokenData> generate(GenerateRequest request) throws Exception {
+        boolean chat = request.getMessages() != null;
+        return stream(chat ? "/chat/completions" : "/completions", body(request), chat);
+    }
+
+    @Override
+    public Flow.Publisher<TokenData> generateAsync(GenerateRequest request) throws Exception {
+        boolean chat = request.getMessages() != null;
+        String path = chat ? "/chat/completions" : "/completions";
+        // comments, event names and [DONE] carry no token
+        return new LinePublisher(CLIENT, post(path, body(request).toString()),
+                line -> line.startsWith("data:") && !line.equals("data: [DONE]")
+                        ? decode(line.substring(5).trim(), chat)
+                        : null,
+                openAsync);
+    }
+
+    private JsonObject body(GenerateRequest request) {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", request.getModel() != null ? request.getModel() : model);
+        body.addProperty("stream", true);
+        List<Map<String, String>> messages = request.getMessages();
+        if (messages == null) {
+            body.addProperty("prompt", request.getPrompt());
+        } else {
+            JsonArray array = new JsonArray(messages.size());
+            for (Map<String, String> message : messages) {
+                JsonObject item = new JsonObject();
+                item.addProperty("role", message.get("role"));
+                item.addProperty("content", message.get("content"));
+                array.add(item);
+            }
+            body.add("messages", array);
+        }
+        Termination termination = request.getTermination();
+        if (!termination.getStop().isEmpty()) {
+            JsonArray stop = new JsonArray();
+            termination.getStop().forEach(stop::add);
+            body.add("stop", stop);
+        }
+        if (termination.getMaxTokens() > 0) {
+            body.addProperty("max_tokens", termination.getMaxTokens());
+        }
+        JsonElement format = request.getFormat();
+        if (format != null) {
+            // "json" means any object, anything else is a schema
+            JsonObject responseFormat = new JsonObject();
+            if (format.isJsonPrimitive()) {
+                responseFormat.addProperty("type", "json_object");
+            } else {
+                responseFormat.addProperty("type", "json_schema");
+                JsonObject schema = new JsonObject();
+                schema.addProperty("name", "reply");
+                schema.add("schema", format);
+                responseFormat.add("json_schema", schema);
+            }
+            body.add("response_format", responseFormat);
+        }
+        return body;
+    }
+
+    /*
+     * Posts the body and streams the text of choices[0] from each event,
+     * a text for completions and a delta for chat
+     */
+    private Stream<TokenData> stream(String path, JsonObject body, boolean chat) throws Exception {
+        HttpResponse<InputStream> response = CLIENT.send(
+                post(path, body.toString()), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            String error;
+            try (InputStream in = response.body()) {
+                error = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            throw new IOException("Backend " + path + " failed (" + response.statusCode() + "): " + error);
+        }
+
+        InputStream in = response.body();
+        open.add(in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Iterator<TokenData> iterator = new Iterator<>() {
+            private TokenData next;
+            private boolean ended = false;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !ended) {
+                    String line;
+                    try {
+                        line = reader.readLine();
+                    } catch (IOException e) {
+                        line = null; // cancelled or dropped
+                    }
+                    if (line == null || line.equals("data: [DONE]")) {
+                        ended = true;
+                        open.remove(in);
+                    } else if (line.startsWith("data:")) {
+                        next = decode(line.substring(5).trim(), chat);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public TokenData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TokenData token = next;
+                next = null;
+                return token;
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED),
+                false).onClose(() -> {
+                    open.remove(in);
+                    try {
+                        reader.close();
+                    } catch (IOException ignored) {
+                    }
+                });
+    }
+
+    private static TokenData decode(String json, boolean chat) {
+        try {
+            JsonArray choices = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("choices");
+            if (choices == null || choices.isEmpty()) {
+                return new TokenData("");
+            }
+            JsonObject choice = choices.get(0).getAsJsonObject();
+            JsonElement text = !chat ? choice.get("text")
+                    : choice.has("delta") ? choice.getAsJsonObject("delta").get("content")
+                    : null;
+            return new TokenData(text == null || text.isJsonNull() ? "" : text.getAsString());
+        } catch (Exception e) {
+            return new TokenData("");
+        }
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) throws Exception {
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (embedModel == null || embedModel.isEmpty()) {
+            throw new IOException("No embedding model set for " + name());
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("model", embedModel);
+        JsonArray input = new JsonArray();
+        texts.forEach(input::add);
+        body.add("input", input);
+
+        HttpResponse<String> response = CLIENT.send(
+                post("/embeddings", body.toString()), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new IOException("Backend embed failed (" + response.statusCode() + "): " + response.body());
+        }
+
+        JsonArray data = JsonParser.parseString(response.body()).getAsJsonObject().getAsJsonArray("data");
+        if (data == null || data.size() != texts.size()) {
+            throw new IOException("Backend embed returned an unexpected number of vectors");
+        }
+        float[][] vectors = new float[texts.size()][];
+        Gson gson = new Gson();
+        for (int i = 0; i < data.size(); i++) {
+            JsonObject item = data.get(i).getAsJsonObject();
+            int index = item.has("index") ? item.get("index").getAsInt() : i;
+            vectors[index] = gson.fromJson(item.get("embedding"), float[].class);
+        }
+        return Arrays.asList(vectors);
+    }
+
+    @Override
+    public void cancelAll() {
+        for (InputStream in : open) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        open.clear();
+        for (LinePublisher.Live stream : openAsync) {
+            stream.abort();
+        }
+    }
+
+    @Override
+    public boolean isHealthy() {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder()
+                    .uri(new URI(baseUrl + "/models"))
+                    .timeout(Duration.ofSeconds(2))
+                    .GET();
+            authorize(request);
+            return CLIENT.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private HttpRequest post(String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(new URI(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+        authorize(request);
+        return request.build();
+    }
+
+    private void authorize(HttpRequest.Builder request) {
+        if (apiKey != null && !apiKey.isEmpty()) {
+            request.header("Authorization", "Bearer " + apiKey);
+        }
+    }
+}
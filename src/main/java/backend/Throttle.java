@@ -0,0 +1,30 @@
+package backend;
+
+/**
+ * Lets a slow consumer of a token stream hold back demand: the token
+ * subscriber stops requesting tokens while the consumer has no room and
+ * requests again once it is resumed.
+ */
+public interface Throttle {
+    Throttle NONE = new Throttle() {
+        @Override
+        public boolean hasRoom() {
+            return true;
+        }
+
+        @Override
+        public void whenRoom(Runnable resume) {
+            resume.run();
+        }
+    };
+
+    /**
+     * True if the consumer takes more tokens now.
+     */
+    boolean hasRoom();
+
+    /**
+     * Runs resume once, as soon as there is room, on any thread.
+     */
+    void whenRoom(Runnable resume);
+}
@@ -0,0 +1,110 @@
+package backend;
+
+import ollama.TokenData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumes a token publisher on whatever thread delivers the tokens,
+ * requesting them in small batches, and only while the throttle has room.
+ * The future completes when the stream does; cancelling it cancels the
+ * stream.
+ */
+public final class TokenSubscriber implements Flow.Subscriber<TokenData> {
+    private static final int BATCH = 32;
+
+    private final Consumer<TokenData> onToken;
+    private final Throttle throttle;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private int received = 0;
+    private final AtomicLong owed = new AtomicLong(); // demand held back for room
+    private final AtomicBoolean held = new AtomicBoolean(); // a resume is registered
+
+    public TokenSubscriber(Consumer<TokenData> onToken) {
+        this(onToken, Throttle.NONE);
+    }
+
+    public TokenSubscriber(Consumer<TokenData> onToken, Throttle throttle) {
+        this.onToken = onToken;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Subscribes a new consumer and reports when the stream ends.
+     */
+    public static CompletableFuture<Void> consume(Flow.Publisher<TokenData> tokens, Consumer<TokenData> onToken) {
+        return consume(tokens, onToken, Throttle.NONE);
+    }
+
+    public static CompletableFuture<Void> consume(Flow.Publisher<TokenData> tokens, Consumer<TokenData> onToken,
+            Throttle throttle) {
+        TokenSubscriber subscriber = new TokenSubscriber(onToken, throttle);
+        tokens.subscribe(subscriber);
+        return subscriber.done;
+    }
+
+    public CompletableFuture<Void> done() {
+        return done;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        done.whenComplete((ignored, error) -> {
+            if (done.isCancelled()) {
+                subscription.cancel();
+            }
+        });
+        subscription.request(BATCH);
+    }
+
+    @Override
+    public void onNext(TokenData token) {
+        if (done.isDone()) {
+            return;
+        }
+        try {
+            onToken.accept(token);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            done.completeExceptionally(e);
+            return;
+        }
+        // ask for the next batch once half of this one is consumed
+        if (++received == BATCH / 2) {
+            received = 0;
+            if (!held.get() && throttle.hasRoom()) {
+                subscription.request(BATCH / 2);
+            } else {
+                owed.addAndGet(BATCH / 2);
+                if (held.compareAndSet(false, true)) {
+                    throttle.whenRoom(this::resume);
+                }
+            }
+        }
+    }
+
+    // clears held before taking the debt, so demand owed meanwhile is not lost
+    private void resume() {
+        held.set(false);
+        long n = owed.getAndSet(0);
+        if (n > 0 && !done.isDone()) {
+            subscription.request(n);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        done.complete(null);
+    }
+}
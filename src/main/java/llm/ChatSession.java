@@ -1,21 +1,57 @@
 package llm;
 
+import com.google.gson.JsonElement;
+import backend.Backends;
+import backend.Throttle;
+import backend.TokenSubscriber;
+import llm.cascade.ModelCascade;
+import llm.cascade.ReplyValidator;
+import llm.embed.MemoryStore;
+import llm.fallback.FallbackResponder;
+import llm.history.MessageLog;
+import llm.transcript.TranscriptLog;
+import metrics.AskEvent;
+import metrics.Stats;
 import ollama.*;
+
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.*;
 import org.nlogo.core.*;
 
 public class ChatSession implements ExtensionObject {
-    private final List<Map<String, String>> chatHistory = new ArrayList<>(); // Role-tagged history
-    private final List<String> plainHistory = new ArrayList<>(); // raw history to pass to Ollama
+    private static final AtomicLong nextId = new AtomicLong();
+
+    private final long id = nextId.getAndIncrement(); // stable reference for export-world
+    private final MessageLog history; // role-tagged history, compact and spillable
     private final String role;
     private final String systemPrompt;
+    private volatile int[] context; // last context tokens returned by the backend
+    private volatile MemoryStore memory; // optional long-term memory, null when disabled
+    private volatile boolean deduplicate; // share identical in-flight requests, see Backends
+    private volatile boolean highPriority; // never shed under overload, see LoadShedder
+    private volatile Termination termination = Termination.NONE; // early end of free-text replies
+    private volatile Routing routing; // small-to-large model cascade, null to use the default model
+    private volatile TranscriptLog transcript; // the owning workspace's, null outside one
+    private final Object turnLock = new Object();
+    private CompletableFuture<Void> lastTurn = CompletableFuture.completedFuture(null); // guarded by turnLock
 
     public ChatSession(String role, String systemPrompt) {
+        this(role, systemPrompt, new MessageLog(), null);
+        history.append("system", this.systemPrompt);
+    }
+
+    // restore a previously serialized session, see SessionCodec
+    ChatSession(String role, String systemPrompt, MessageLog history, int[] context) {
         this.role = role;
         this.systemPrompt = systemPrompt;
-        chatHistory.add(Map.of("role", "system", "content", this.systemPrompt));
-        plainHistory.add(this.systemPrompt);
+        this.history = history;
+        this.context = context;
     }
 
     public ChatSession(String role) {
@@ -42,27 +78,371 @@ public class ChatSession implements ExtensionObject {
         return systemPrompt;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    public MessageLog getHistory() {
+        return history;
+    }
+
+    public int[] getContext() {
+        return context;
+    }
+
+    public MemoryStore getMemory() {
+        return memory;
+    }
+
+    public void setMemory(MemoryStore memory) {
+        this.memory = memory;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isHighPriority() {
+        return highPriority;
+    }
+
+    public void setHighPriority(boolean highPriority) {
+        this.highPriority = highPriority;
+    }
+
+    public Termination getTermination() {
+        return termination;
+    }
+
+    public void setTermination(Termination termination) {
+        this.termination = termination;
+    }
+
+    /**
+     * Logs this session's turns into the transcript of the workspace that
+     * created or loaded it.
+     */
+    public void setTranscript(TranscriptLog transcript) {
+        this.transcript = transcript;
+    }
+
+    public ModelCascade getCascade() {
+        Routing current = routing;
+        return current == null ? null : current.cascade;
+    }
+
+    /**
+     * Routes this session's turns through the cascade, escalating replies
+     * the validator rejects; structured replies must also match their
+     * schema. A null cascade switches routing off.
+     */
+    public void setCascade(ModelCascade cascade, ReplyValidator validator) {
+        routing = cascade == null ? null : new Routing(cascade, validator);
+    }
+
+    // cascade and validator change together
+    private static final class Routing {
+        final ModelCascade cascade;
+        final ReplyValidator validator;
+
+        Routing(ModelCascade cascade, ReplyValidator validator) {
+            this.cascade = cascade;
+            this.validator = validator;
+        }
+    }
+
     public Stream<TokenData> ask(Map<String, String> message) {
-        chatHistory.add(message);
-        plainHistory.add(message.get("content"));
+        return ask(message, null);
+    }
+
+    /*
+     * Same as ask, but the reply is constrained to the given Ollama format
+     * ("json" or a JSON schema)
+     */
+    public Stream<TokenData> ask(Map<String, String> message, JsonElement format) {
+        return ask(message, format, token -> {
+        });
+    }
 
+    /*
+     * Streaming variant: onToken sees every token as it arrives, before the
+     * full reply is recorded and returned. Waits for the session's earlier
+     * turns to finish first
+     */
+    public Stream<TokenData> ask(Map<String, String> message, JsonElement format, Consumer<TokenData> onToken) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = takeTurn(done);
         try {
-            // Only send the latest message; let the backend handle the history and system
-            // prompt
-            Stream<TokenData> responseTokens = OllamaClient.getInstance()
-                    .ask(message.get("content"), plainHistory);
+            previous.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            previous.whenComplete((ignored, error) -> done.complete(null)); // keep later turns in order
+            return Stream.empty();
+        } catch (ExecutionException e) {
+            // turns complete normally, see takeTurn
+        }
+        try {
+            return askNow(message, format, onToken);
+        } finally {
+            done.complete(null);
+        }
+    }
 
-            StringBuilder assistantBuilder = new StringBuilder();
-            responseTokens.forEach(token -> assistantBuilder.append(token.getToken()));
-            String assistantReply = assistantBuilder.toString();
+    private Stream<TokenData> askNow(Map<String, String> message, JsonElement format, Consumer<TokenData> onToken) {
+        String prompt = message.get("content");
+        history.append(message.get("role"), prompt);
+        Turn turn = new Turn(prompt, format == null);
 
-            chatHistory.add(Map.of("role", "assistant", "content", assistantReply));
-            plainHistory.add(assistantReply);
+        try {
+            // Only send the latest message; the context tokens of the previous reply carry
+            // the conversation on the backend. Relevant long-term memories are prepended
+            // when enabled.
+            MemoryStore memory = this.memory;
+            String sent = memory == null ? prompt : augmentSafely(memory, prompt);
+            GenerateRequest request = new GenerateRequest(sent)
+                    .setFormat(format)
+                    .setDeduplicate(deduplicate)
+                    .setTermination(terminationFor(format))
+                    .setContext(context)
+                    .setMessages(new Conversation(history, sent));
+            Routing routing = this.routing;
+            if (routing == null) {
+                // closing releases the limiter slot and the connection even if a token throws
+                try (Stream<TokenData> responseTokens = Backends.ask(request)) {
+                    responseTokens.forEach(token -> turn.token(token, onToken));
+                }
+            } else {
+                // only the kept reply is passed on, since earlier tiers' tokens may be void
+                ReplyValidator validator = format == null
+                        ? routing.validator
+                        : ReplyValidator.json(format).and(routing.validator);
+                // context tokens belong to one model, and tiers differ
+                String reply = routing.cascade.generate(request.setContext(null), validator, token -> {
+                });
+                turn.token(new TokenData(reply), onToken);
+            }
+            String assistantReply = turn.succeed();
+            if (memory != null) {
+                rememberSafely(memory, prompt + "\n" + assistantReply);
+            }
 
             return Stream.of(new TokenData(assistantReply));
         } catch (Exception e) {
             e.printStackTrace();
+            Stats.count("ask.errors", 1);
             return Stream.empty();
+        } finally {
+            turn.end();
+        }
+    }
+
+    /*
+     * Non-blocking variant: returns at once, tokens reach onToken on the
+     * HTTP client's threads and the future completes with the reply, or
+     * exceptionally if generation fails. The turn starts once the
+     * session's earlier turns have finished, without a thread waiting.
+     * Sessions with long-term memory, deduplication or a cascade need
+     * blocking calls, so they run the plain ask on the calling thread
+     * instead
+     */
+    public CompletableFuture<String> askAsync(Map<String, String> message, JsonElement format,
+            Consumer<TokenData> onToken) {
+        return askAsync(message, format, onToken, Throttle.NONE);
+    }
+
+    /*
+     * Same, but tokens are only requested while throttle has room
+     */
+    public CompletableFuture<String> askAsync(Map<String, String> message, JsonElement format,
+            Consumer<TokenData> onToken, Throttle throttle) {
+        if (memory != null || deduplicate || routing != null) {
+            Optional<TokenData> reply = ask(message, format, onToken).findFirst();
+            return reply.isPresent()
+                    ? CompletableFuture.completedFuture(reply.get().getToken())
+                    : CompletableFuture.failedFuture(new IOException("Generation failed"));
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<String> reply = takeTurn(done)
+                .thenCompose(ignored -> askNowAsync(message, format, onToken, throttle));
+        reply.whenComplete((ignored, error) -> done.complete(null));
+        return reply;
+    }
+
+    private CompletableFuture<String> askNowAsync(Map<String, String> message, JsonElement format,
+            Consumer<TokenData> onToken, Throttle throttle) {
+        String prompt = message.get("content");
+        history.append(message.get("role"), prompt);
+        Turn turn = new Turn(prompt, format == null);
+        GenerateRequest request = new GenerateRequest(prompt)
+                .setFormat(format)
+                .setTermination(terminationFor(format))
+                .setContext(context)
+                .setMessages(new Conversation(history, prompt));
+        return TokenSubscriber.consume(Backends.generateAsync(request),
+                        token -> turn.token(token, onToken), throttle)
+                .handle((ignored, error) -> {
+                    try {
+                        if (error != null) {
+                            Stats.count("ask.errors", 1);
+                            throw error instanceof CompletionException
+                                    ? (CompletionException) error
+                                    : new CompletionException(error);
+                        }
+                        return turn.succeed();
+                    } finally {
+                        turn.end();
+                    }
+                });
+    }
+
+    /*
+     * Turns of one session run one at a time in the order they were asked,
+     * so its history alternates prompt and reply even when several handles
+     * ask it at once. Reports the previous turn's future, which completes
+     * (always normally) when that turn is over; done must be completed
+     * when this turn is over
+     */
+    private CompletableFuture<Void> takeTurn(CompletableFuture<Void> done) {
+        synchronized (turnLock) {
+            CompletableFuture<Void> previous = lastTurn;
+            lastTurn = done;
+            return previous;
+        }
+    }
+
+    // cutting structured replies short would leave invalid JSON
+    private Termination terminationFor(JsonElement format) {
+        return format == null ? termination : Termination.NONE;
+    }
+
+    /*
+     * The history as chat messages, for backends without context tokens,
+     * ending with the prompt as sent (with recalled memories). Read on
+     * first access, so backends that never look cost nothing. Prompts are
+     * recorded under the session's role, which may itself be "assistant",
+     * so a reply is an assistant entry that answers a waiting prompt
+     */
+    private static final class Conversation extends AbstractList<Map<String, String>> {
+        private final MessageLog history;
+        private final int size; // up to and including the prompt of this turn
+        private final String sent;
+        private String[] roles; // system, user or assistant; filled on first access
+
+        Conversation(MessageLog history, String sent) {
+            this.history = history;
+            this.size = history.size();
+            this.sent = sent;
+        }
+
+        @Override
+        public Map<String, String> get(int index) {
+            Objects.checkIndex(index, size);
+            String content = index == size - 1 ? sent : history.content(index);
+            return Map.of("role", roles()[index], "content", content);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private synchronized String[] roles() {
+            if (roles == null) {
+                roles = new String[size];
+                boolean waiting = false; // a prompt has no reply yet
+                for (int i = 0; i < size; i++) {
+                    String role = history.role(i);
+                    if ("system".equals(role)) {
+                        roles[i] = "system";
+                    } else if ("assistant".equals(role) && waiting && i < size - 1) {
+                        roles[i] = "assistant";
+                        waiting = false;
+                    } else {
+                        roles[i] = "user";
+                        waiting = true;
+                    }
+                }
+            }
+            return roles;
+        }
+    }
+
+    /*
+     * Bookkeeping of one turn, shared by the blocking and non-blocking ask:
+     * trace event, timings, reply assembly and the transcript record
+     */
+    private final class Turn {
+        private final String prompt;
+        private final AskEvent event = new AskEvent();
+        private final long start = System.nanoTime();
+        private final StringBuilder reply = new StringBuilder();
+        private final boolean chatter; // free text, worth learning for fallback replies
+        private String assistantReply = null; // set once the reply is complete
+
+        Turn(String prompt, boolean chatter) {
+            this.prompt = prompt;
+            this.chatter = chatter;
+            event.begin();
+            event.role = role;
+            event.sessionId = id;
+            event.promptLength = prompt.length();
+        }
+
+        void token(TokenData token, Consumer<TokenData> onToken) {
+            if (event.tokens++ == 0) {
+                event.timeToFirstToken = System.nanoTime() - start;
+                Stats.time("ask.first-token", event.timeToFirstToken);
+            }
+            reply.append(token.getToken());
+            onToken.accept(token);
+            if (token.getContext() != null) {
+                context = token.getContext();
+            }
+        }
+
+        String succeed() {
+            assistantReply = reply.toString();
+            event.replyLength = assistantReply.length();
+            history.append("assistant", assistantReply);
+            if (chatter) {
+                FallbackResponder.learn(role, assistantReply);
+            }
+            return assistantReply;
+        }
+
+        void end() {
+            event.end();
+            event.commit();
+            long latency = System.nanoTime() - start;
+            Stats.time("ask.total", latency);
+            TranscriptLog log = transcript;
+            if (log != null) {
+                log.turn(id, role, prompt, assistantReply, event.tokens,
+                        event.tokens > 0 ? event.timeToFirstToken : -1, latency, assistantReply != null);
+            }
+        }
+    }
+
+    // memory is best effort: a missing embedding model must not break the chat
+    private static String augmentSafely(MemoryStore memory, String prompt) {
+        try {
+            return memory.augment(prompt);
+        } catch (Exception e) {
+            System.err.println("Memory recall failed: " + e.getMessage());
+            return prompt;
+        }
+    }
+
+    private static void rememberSafely(MemoryStore memory, String turn) {
+        try {
+            memory.remember(turn);
+        } catch (Exception e) {
+            System.err.println("Memory store failed: " + e.getMessage());
         }
     }
 
@@ -78,17 +458,39 @@ public class ChatSession implements ExtensionObject {
 
     @Override
     public boolean recursivelyEqual(Object obj) {
-        return false;
+        if (!(obj instanceof ChatSession)) {
+            return false;
+        }
+        ChatSession other = (ChatSession) obj;
+        if (!role.equals(other.role) || !systemPrompt.equals(other.systemPrompt)
+                || !Arrays.equals(context, other.context) || history.size() != other.history.size()) {
+            return false;
+        }
+        for (int i = 0; i < history.size(); i++) {
+            if (!history.role(i).equals(other.history.role(i))
+                    || !history.content(i).equals(other.history.content(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String dump(boolean readable, boolean exporting, boolean references) {
+        if (exporting) {
+            // id plus the full binary state, read back by LLM.readExtensionObject
+            try {
+                return id + ":" + Base64.getEncoder().encodeToString(SessionCodec.encode(this));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not export chat session: " + e.getMessage(), e);
+            }
+        }
         // return the entire history
         StringBuilder dump = new StringBuilder();
-        for (Map<String, String> msg : chatHistory) {
-            dump.append(msg.get("role"))
+        for (int i = 0; i < history.size(); i++) {
+            dump.append(history.role(i))
                     .append(": ")
-                    .append(msg.get("content"))
+                    .append(history.content(i))
                     .append("\n");
         }
         return dump.toString();
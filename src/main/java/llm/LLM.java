@@ -1,19 +1,127 @@
 // NetLogo Class Manager
 package llm;
 
+import llm.async.WorkspaceState;
+import llm.embed.Embedding;
+import llm.match.PartnerMatcher;
 import llm.primitives.*;
 import org.nlogo.api.*;
+import org.nlogo.core.ExtensionObject;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 public class LLM extends DefaultClassManager {
+    // sessions restored during import-world, so shared references stay shared
+    private final Map<Long, ChatSession> importedSessions = new HashMap<>();
+    // handles, callbacks and scheduler lane of the workspace this manager belongs to
+    private final WorkspaceState state = new WorkspaceState();
+    // conversation cooldowns for llm:match-partners
+    private final PartnerMatcher matcher = new PartnerMatcher();
+
     @Override
     public void load(PrimitiveManager primitiveManager) {
-        primitiveManager.addPrimitive("ask", new LLMAskSync());
-        primitiveManager.addPrimitive("create-session", new LLMCreateSession());
-        primitiveManager.addPrimitive("ask-async", new LLMAskAsync());
-        primitiveManager.addPrimitive("poll-conversation", new PollConversation());
-        primitiveManager.addPrimitive("conversation-complete?", new ConversationCompleteQ());
+        primitiveManager.addPrimitive("ask", new LLMAskSync(state));
+        primitiveManager.addPrimitive("create-session", new LLMCreateSession(state));
+        primitiveManager.addPrimitive("ask-async", new LLMAskAsync(state));
+        primitiveManager.addPrimitive("poll-conversation", new PollConversation(state));
+        primitiveManager.addPrimitive("conversation-complete?", new ConversationCompleteQ(state));
+        primitiveManager.addPrimitive("poll", new LLMPoll(state));
+        primitiveManager.addPrimitive("poll-all", new PollAll(state));
+        primitiveManager.addPrimitive("retire-handle", new LLMRetireHandle(state));
+        // dialogues
+        primitiveManager.addPrimitive("match-partners", new LLMMatchPartners(matcher));
+        primitiveManager.addPrimitive("start-dialogue", new LLMStartDialogue(state));
+        primitiveManager.addPrimitive("dialogue-progress", new DialogueProgress(state));
+        primitiveManager.addPrimitive("dialogue-transcript", new DialogueTranscript(state));
+        // callbacks
+        primitiveManager.addPrimitive("ask-then", new LLMAskThen(state));
+        primitiveManager.addPrimitive("ask-streaming", new LLMAskStreaming(state));
+        primitiveManager.addPrimitive("dispatch-callbacks", new DispatchCallbacks(state));
+        primitiveManager.addPrimitive("ask-structured", new LLMAskStructured());
+        primitiveManager.addPrimitive("ask-structured-async", new LLMAskStructuredAsync(state));
+        primitiveManager.addPrimitive("structured-result", new StructuredResult(state));
+        // embeddings
+        primitiveManager.addPrimitive("embed", new LLMEmbed());
+        primitiveManager.addPrimitive("embed-batch", new LLMEmbedBatch());
+        primitiveManager.addPrimitive("cosine-similarity", new CosineSimilarity());
+        primitiveManager.addPrimitive("set-embedding-cache-size", new LLMSetEmbeddingCacheSize());
+        // long-term memory
+        primitiveManager.addPrimitive("set-memory", new LLMSetMemory());
+        primitiveManager.addPrimitive("remember", new LLMRemember());
+        primitiveManager.addPrimitive("recall", new LLMRecall());
+        primitiveManager.addPrimitive("set-deduplicate", new LLMSetDeduplicate());
+        primitiveManager.addPrimitive("set-text-options", new LLMSetTextOptions(state));
+        primitiveManager.addPrimitive("set-termination", new LLMSetTermination());
+        primitiveManager.addPrimitive("set-history-budget", new LLMSetHistoryBudget());
+        // backends
+        primitiveManager.addPrimitive("set-backend", new LLMSetBackend());
+        primitiveManager.addPrimitive("backend-healthy?", new BackendHealthyQ());
+        primitiveManager.addPrimitive("cancel-all", new LLMCancelAll());
+        primitiveManager.addPrimitive("concurrency", new LLMConcurrency());
+        primitiveManager.addPrimitive("set-concurrency-bounds", new LLMSetConcurrencyBounds());
+        primitiveManager.addPrimitive("set-cascade", new LLMSetCascade());
+        primitiveManager.addPrimitive("set-overload-policy", new LLMSetOverloadPolicy(state));
+        primitiveManager.addPrimitive("set-priority", new LLMSetPriority());
+        primitiveManager.addPrimitive("reply-status", new LLMReplyStatus(state));
+        primitiveManager.addPrimitive("seed-fallback", new LLMSeedFallback());
+        // diagnostics
+        primitiveManager.addPrimitive("stats", new LLMStats());
+        primitiveManager.addPrimitive("reset-stats", new LLMResetStats());
+        primitiveManager.addPrimitive("cascade-stats", new LLMCascadeStats());
+        primitiveManager.addPrimitive("start-transcript", new LLMStartTranscript(state));
+        primitiveManager.addPrimitive("stop-transcript", new LLMStopTranscript(state));
+        primitiveManager.addPrimitive("set-log-level", new LLMSetLogLevel());
+        // checkpointing
+        primitiveManager.addPrimitive("save-sessions", new LLMSaveSessions());
+        primitiveManager.addPrimitive("load-sessions", new LLMLoadSessions(state));
         // chat
         primitiveManager.addPrimitive("open-chat", new LLMOpenChat());
         primitiveManager.addPrimitive("run-code", new LLMRunCode());
     }
+
+    @Override
+    public void clearAll() {
+        importedSessions.clear();
+        state.clear();
+        matcher.clear();
+    }
+
+    @Override
+    public void unload(ExtensionManager em) throws ExtensionException {
+        importedSessions.clear();
+        state.close();
+    }
+
+    @Override
+    public ExtensionObject readExtensionObject(ExtensionManager reader, String typeName, String value)
+            throws ExtensionException {
+        if ("vector".equals(typeName)) {
+            try {
+                return Embedding.parse(value);
+            } catch (NumberFormatException e) {
+                throw new ExtensionException("Could not import vector: " + e.getMessage(), e);
+            }
+        }
+        // value is "<id>:<base64 session>" as written by ChatSession.dump
+        String trimmed = value.trim();
+        int separator = trimmed.indexOf(':');
+        if (separator < 0) {
+            throw new ExtensionException("Malformed chat session: " + trimmed);
+        }
+        try {
+            long id = Long.parseLong(trimmed.substring(0, separator).trim());
+            ChatSession session = importedSessions.get(id);
+            if (session == null) {
+                byte[] encoded = Base64.getDecoder().decode(trimmed.substring(separator + 1).trim());
+                session = SessionCodec.decode(encoded);
+                session.setTranscript(state.transcript());
+                importedSessions.put(id, session);
+            }
+            return session;
+        } catch (Exception e) {
+            throw new ExtensionException("Could not import chat session: " + e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,173 @@
+package llm;
+
+import llm.embed.MemoryStore;
+import llm.history.MessageLog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary format for ChatSession state.
+ * A stream starts with a magic number and a format version; each session
+ * record holds role, system prompt, backend context tokens, the full
+ * message log and (since version 2) the long-term memory. Files written by
+ * llm:save-sessions hold each distinct session once, followed by the keys
+ * (turtle who numbers) that refer to it, so a session shared by several
+ * turtles loads as one object again (version 3; earlier files prefix every
+ * record with its key).
+ */
+public final class SessionCodec {
+    private static final int MAGIC = 0x4C4C4D53; // "LLMS"
+    private static final int VERSION = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SessionCodec() {
+    }
+
+    public static byte[] encode(ChatSession session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out);
+        writeSession(out, session);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static ChatSession decode(byte[] encoded) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        int version = readHeader(in);
+        return readSession(in, version);
+    }
+
+    public static void save(File file, Map<Long, ChatSession> sessions) throws IOException {
+        // number the distinct sessions by identity, in first-seen order
+        Map<ChatSession, Integer> indices = new IdentityHashMap<>();
+        List<ChatSession> distinct = new ArrayList<>();
+        for (ChatSession session : sessions.values()) {
+            if (!indices.containsKey(session)) {
+                indices.put(session, distinct.size());
+                distinct.add(session);
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+            writeHeader(out);
+            out.writeInt(distinct.size());
+            for (ChatSession session : distinct) {
+                writeSession(out, session);
+            }
+            out.writeInt(sessions.size());
+            for (Map.Entry<Long, ChatSession> entry : sessions.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(indices.get(entry.getValue()));
+            }
+        }
+    }
+
+    public static Map<Long, ChatSession> load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            int version = readHeader(in);
+            Map<Long, ChatSession> sessions = new LinkedHashMap<>();
+            if (version < 3) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long key = in.readLong();
+                    sessions.put(key, readSession(in, version));
+                }
+                return sessions;
+            }
+            int distinctCount = in.readInt();
+            if (distinctCount < 0) {
+                throw new IOException("Corrupt session file");
+            }
+            List<ChatSession> distinct = new ArrayList<>(distinctCount);
+            for (int i = 0; i < distinctCount; i++) {
+                distinct.add(readSession(in, version));
+            }
+            int keyCount = in.readInt();
+            for (int i = 0; i < keyCount; i++) {
+                long key = in.readLong();
+                int index = in.readInt();
+                if (index < 0 || index >= distinct.size()) {
+                    throw new IOException("Corrupt session file");
+                }
+                sessions.put(key, distinct.get(index));
+            }
+            return sessions;
+        }
+    }
+
+    private static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    private static int readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an llm session file");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported session format version " + version);
+        }
+        return version;
+    }
+
+    private static void writeSession(DataOutput out, ChatSession session) throws IOException {
+        writeString(out, session.getRole());
+        writeString(out, session.getSystemPrompt());
+        int[] context = session.getContext();
+        if (context == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(context.length);
+            for (int token : context) {
+                out.writeInt(token);
+            }
+        }
+        session.getHistory().writeTo(out);
+        MemoryStore memory = session.getMemory();
+        out.writeBoolean(memory != null);
+        if (memory != null) {
+            memory.writeTo(out);
+        }
+    }
+
+    private static ChatSession readSession(DataInput in, int version) throws IOException {
+        String role = readString(in);
+        String systemPrompt = readString(in);
+        int contextLength = in.readInt();
+        int[] context = null;
+        if (contextLength >= 0) {
+            context = new int[contextLength];
+            for (int i = 0; i < contextLength; i++) {
+                context[i] = in.readInt();
+            }
+        }
+        MessageLog history = MessageLog.readFrom(in);
+        ChatSession session = new ChatSession(role, systemPrompt, history, context);
+        if (version >= 2 && in.readBoolean()) {
+            session.setMemory(MemoryStore.readFrom(in));
+        }
+        return session;
+    }
+
+    // length-prefixed UTF-8, unlike writeUTF not limited to 64KB
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
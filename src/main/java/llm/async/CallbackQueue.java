@@ -0,0 +1,100 @@
+package llm.async;
+
+import org.nlogo.api.AnonymousCommand;
+import org.nlogo.api.Context;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Callbacks posted by worker threads, run later on the NetLogo job thread
+ * by llm:dispatch-callbacks. Anonymous commands must never run on a worker.
+ * There is one queue per workspace, see {@link WorkspaceState}.
+ */
+public final class CallbackQueue {
+    private final Queue<Callback> queue = new ConcurrentLinkedQueue<>();
+    private volatile int epoch = 0; // bumped by clear, drops posts from older requests
+
+    CallbackQueue() {
+    }
+
+    interface Callback {
+        void run(Context context);
+    }
+
+    void post(int postedEpoch, Callback callback) {
+        if (postedEpoch == epoch) {
+            queue.offer(callback);
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Runs every queued callback in the order it was posted. Callbacks
+     * posted while dispatching wait for the next call, so one dispatch is
+     * bounded. Reports how many callbacks ran.
+     */
+    public int dispatch(Context context) {
+        int pending = queue.size();
+        int ran = 0;
+        Callback callback;
+        while (ran < pending && (callback = queue.poll()) != null) {
+            callback.run(context);
+            ran++;
+        }
+        return ran;
+    }
+
+    public void clear() {
+        epoch++;
+        queue.clear();
+    }
+
+    /**
+     * Listener that turns a reply into queued anonymous command calls.
+     * Chunks are coalesced: however many arrive between two dispatches,
+     * the chunk command runs once with all of their text.
+     */
+    public ReplyListener listener(AnonymousCommand onChunk, AnonymousCommand onReply) {
+        int created = epoch;
+        return new ReplyListener() {
+            private final StringBuilder chunks = new StringBuilder(); // guarded by this
+
+            @Override
+            public void onChunk(String text) {
+                if (onChunk == null || text.isEmpty()) {
+                    return;
+                }
+                boolean schedule;
+                synchronized (this) {
+                    schedule = chunks.length() == 0;
+                    chunks.append(text);
+                }
+                if (schedule) {
+                    post(created, context -> {
+                        String pending;
+                        synchronized (this) {
+                            pending = chunks.toString();
+                            chunks.setLength(0);
+                        }
+                        onChunk.perform(context, new Object[] { pending });
+                    });
+                }
+            }
+
+            @Override
+            public void onComplete(String reply) {
+                post(created, context -> onReply.perform(context, new Object[] { reply }));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // same marker the polling path uses
+                onComplete("[[ERROR: " + e.getMessage() + "]]");
+            }
+        };
+    }
+}
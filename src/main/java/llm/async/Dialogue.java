@@ -0,0 +1,115 @@
+package llm.async;
+
+import llm.ChatSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A multi-turn exchange between two sessions, run entirely off the job
+ * thread. Each reply becomes the other session's next prompt as soon as it
+ * is finished, so a dialogue takes as long as its turns, not one tick per
+ * turn. The text of every turn streams into one buffer, turns separated by
+ * a newline; finished turns are kept as a transcript. Partners are
+ * prompted with the raw reply; wrapping is for display only.
+ */
+public final class Dialogue implements ReplyListener {
+    /**
+     * Runs one turn and reports it to the listener, from any thread.
+     */
+    public interface TurnRunner {
+        void ask(ChatSession session, String prompt, ReplyListener listener);
+    }
+
+    private static final String[] SPEAKERS = { "a", "b" };
+
+    private final ChatSession[] sessions;
+    private final int turns;
+    private final ReplyBuffer buffer;
+    private final TurnRunner runner;
+    private final List<List<String>> transcript = new ArrayList<>(); // guarded by this
+    private volatile int finished = 0;
+    private volatile boolean cancelled = false;
+
+    public Dialogue(ChatSession a, ChatSession b, int turns, ReplyBuffer buffer, TurnRunner runner) {
+        this.sessions = new ChatSession[] { a, b };
+        this.turns = turns;
+        this.buffer = buffer;
+        this.runner = runner;
+    }
+
+    /**
+     * Starts with session a answering the opener.
+     */
+    public void start(String opener) {
+        if (turns <= 0) {
+            buffer.complete();
+            return;
+        }
+        runner.ask(sessions[0], opener, this);
+    }
+
+    /**
+     * Stops the dialogue after the turn in flight, as on clear-all.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public int getFinished() {
+        return finished;
+    }
+
+    /**
+     * Finished turns as [speaker text] pairs, speaker being "a" or "b".
+     */
+    public synchronized List<List<String>> getTranscript() {
+        return new ArrayList<>(transcript);
+    }
+
+    @Override
+    public void onChunk(String text) {
+        buffer.write(text);
+    }
+
+    @Override
+    public boolean hasRoom() {
+        return buffer.hasRoom();
+    }
+
+    @Override
+    public void whenRoom(Runnable resume) {
+        buffer.whenRoom(resume);
+    }
+
+    @Override
+    public void onComplete(String reply) {
+        onComplete(reply, reply);
+    }
+
+    @Override
+    public void onComplete(String reply, String raw) {
+        int turn = finished;
+        synchronized (this) {
+            transcript.add(Arrays.asList(SPEAKERS[turn % 2], reply));
+        }
+        finished = turn + 1;
+        if (finished < turns && !cancelled) {
+            buffer.write("\n");
+            // the reply is the partner's prompt; queued behind other work in the lane
+            runner.ask(sessions[finished % 2], raw, this);
+        } else {
+            buffer.complete();
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        buffer.onError(e);
+    }
+}
@@ -0,0 +1,144 @@
+package llm.async;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Worker pool shared by every workspace in the JVM. Each workspace submits
+ * through its own lane, and a free slot takes one task from each lane with
+ * pending work in turn: N busy runs get about 1/N of the throughput each,
+ * however many requests one of them queues. There is a slot per worker; a
+ * plain task holds it while running, an async task until the future it
+ * started completes, without keeping the worker. Tasks wait in their lane
+ * until a slot is free, so clearing a lane still drops them. How many
+ * requests actually reach the server at once is decided by the backend's
+ * adaptive limiter; there are enough slots that the pool does not cap it
+ * first.
+ */
+public final class FairScheduler {
+    private static final int DEFAULT_WORKERS = 32;
+    private static final FairScheduler SHARED = new FairScheduler(
+            Integer.getInteger("llm.workers", DEFAULT_WORKERS));
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>(); // lanes with queued tasks, guarded by lock
+    private final int slots;
+    private int running = 0; // tasks holding a slot, guarded by lock
+
+    private FairScheduler(int workers) {
+        slots = Math.max(1, workers);
+        for (int i = 0; i < slots; i++) {
+            Thread worker = new Thread(this::work, "llm-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    public static FairScheduler shared() {
+        return SHARED;
+    }
+
+    public Lane newLane() {
+        return new Lane();
+    }
+
+    private void work() {
+        while (true) {
+            Supplier<? extends CompletionStage<?>> task;
+            synchronized (lock) {
+                while (ready.isEmpty() || running >= slots) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                Lane lane = ready.poll();
+                task = lane.tasks.poll();
+                if (!lane.tasks.isEmpty()) {
+                    ready.add(lane); // back of the line
+                }
+                running++;
+            }
+            CompletionStage<?> started = null;
+            try {
+                started = task.get();
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+            (started != null ? started : DONE).whenComplete((ignored, error) -> release());
+        }
+    }
+
+    private void release() {
+        synchronized (lock) {
+            running--;
+            lock.notify();
+        }
+    }
+
+    /**
+     * One submitter's queue. Tasks in a lane run in submission order
+     * relative to each other's start, not one at a time.
+     */
+    public final class Lane {
+        // guarded by lock
+        private final ArrayDeque<Supplier<? extends CompletionStage<?>>> tasks = new ArrayDeque<>();
+        private boolean closed = false;
+
+        private Lane() {
+        }
+
+        public void submit(Runnable task) {
+            submitAsync(() -> {
+                task.run();
+                return DONE;
+            });
+        }
+
+        /**
+         * Queues a task that starts asynchronous work; its slot is held
+         * until the returned future completes.
+         */
+        public void submitAsync(Supplier<? extends CompletionStage<?>> task) {
+            synchronized (lock) {
+                if (closed) {
+                    throw new RejectedExecutionException("Extension was unloaded");
+                }
+                tasks.add(task);
+                if (tasks.size() == 1) {
+                    ready.add(this);
+                    lock.notify();
+                }
+            }
+        }
+
+        public int queued() {
+            synchronized (lock) {
+                return tasks.size();
+            }
+        }
+
+        /**
+         * Drops queued tasks; running ones finish on their own.
+         */
+        public void clear() {
+            synchronized (lock) {
+                tasks.clear();
+                ready.remove(this);
+            }
+        }
+
+        public void close() {
+            synchronized (lock) {
+                closed = true;
+                tasks.clear();
+                ready.remove(this);
+            }
+        }
+    }
+}
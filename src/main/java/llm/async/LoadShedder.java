@@ -0,0 +1,99 @@
+package llm.async;
+
+import backend.AdaptiveLimiter;
+import backend.Backends;
+import llm.ChatSession;
+import llm.fallback.FallbackResponder;
+import metrics.Stats;
+import utils.Log;
+import utils.TextPipeline;
+
+import java.util.Locale;
+
+/**
+ * Overload protection for llm:ask-async. Once the requests waiting for a
+ * backend slot reach a maximum, or the estimated wait for a new request
+ * exceeds one, low-priority requests are not queued: they either complete
+ * at once with status "shed", or get an instant reply from the
+ * FallbackResponder with status "fallback". High-priority sessions
+ * always queue.
+ */
+public final class LoadShedder {
+    public enum Mode {
+        OFF, // queue everything, as before
+        FAIL, // complete shed requests empty, with status "shed"
+        FALLBACK; // answer shed requests locally
+
+        public static Mode parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Unknown overload mode \"" + name + "\", expected off, fail or fallback");
+            }
+        }
+    }
+
+    /**
+     * When to shed, set with llm:set-overload-policy. DEFAULTS come from
+     * the llm.shed, llm.shed-queue and llm.shed-wait-ms properties.
+     */
+    public static final class Policy {
+        public static final Policy DEFAULTS = new Policy(modeProperty(),
+                Integer.getInteger("llm.shed-queue", 64), Long.getLong("llm.shed-wait-ms", 30_000) / 1000.0);
+
+        private final Mode mode;
+        private final int maxQueue;
+        private final long maxWaitNanos;
+
+        public Policy(Mode mode, int maxQueue, double maxWaitSeconds) {
+            this.mode = mode;
+            this.maxQueue = maxQueue;
+            this.maxWaitNanos = (long) (maxWaitSeconds * 1e9);
+        }
+    }
+
+    private LoadShedder() {
+    }
+
+    // a bad llm.shed value must not keep the extension from loading
+    private static Mode modeProperty() {
+        try {
+            return Mode.parse(System.getProperty("llm.shed", "off"));
+        } catch (IllegalArgumentException e) {
+            Log.warn(e.getMessage() + "; overload protection is off");
+            return Mode.OFF;
+        }
+    }
+
+    /**
+     * Sheds the request if the backend is overloaded and the session is
+     * low priority, under the workspace's policy. Reports true if the
+     * buffer was completed here.
+     */
+    public static boolean shed(WorkspaceState state, ChatSession session, ReplyBuffer buffer) {
+        Policy policy = state.overloadPolicy();
+        if (policy.mode == Mode.OFF || session.isHighPriority() || !overloaded(state, policy)) {
+            return false;
+        }
+        if (policy.mode == Mode.FAIL) {
+            Stats.count("shed.failed", 1);
+            buffer.completeLocally("shed");
+            return true;
+        }
+        TextPipeline pipeline = TextPipeline.forReplies(state.textOptions());
+        buffer.write(pipeline.push(FallbackResponder.reply(session.getRole())));
+        buffer.write(pipeline.finish());
+        Stats.count("shed.fallback", 1);
+        buffer.completeLocally("fallback");
+        return true;
+    }
+
+    // requests queued in this workspace's lane have not reached the limiter yet
+    private static boolean overloaded(WorkspaceState state, Policy policy) {
+        AdaptiveLimiter limiter = Backends.getLimiter();
+        int queued = state.queued();
+        return limiter.getWaiting() + queued >= policy.maxQueue
+                || limiter.estimatedWaitNanos(queued) >= policy.maxWaitNanos;
+    }
+}
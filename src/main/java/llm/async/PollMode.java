@@ -0,0 +1,22 @@
+package llm.async;
+
+import java.util.Locale;
+
+/**
+ * How polled reply text is split into list items.
+ */
+public enum PollMode {
+    CHARS, // one item per character, as llm:poll-conversation always did
+    TEXT, // everything new as a single string
+    WORDS, // finished words, each with its trailing whitespace
+    LINES; // finished lines, without the newline
+
+    public static PollMode parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Unknown poll mode \"" + name + "\", expected chars, text, words or lines");
+        }
+    }
+}
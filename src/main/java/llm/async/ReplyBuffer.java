@@ -0,0 +1,296 @@
+package llm.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-producer/single-consumer character buffer for one async reply.
+ * The thread delivering tokens writes text as it arrives, the NetLogo job
+ * thread polls it, coalesced according to a {@link PollMode}.
+ * Writes never block: past the capacity the buffer reports no room, and
+ * the token subscriber stops requesting tokens until a poll makes room,
+ * so the ring only outgrows the capacity by the tokens already requested.
+ * The ring starts empty and doubles as text backs up, so short replies
+ * stay small; it is released once the reply is complete and fully polled.
+ */
+public final class ReplyBuffer implements ReplyListener {
+    private static final int DEFAULT_CAPACITY = 16 * 1024;
+    private static final int INITIAL_SIZE = 64;
+    private static final char[] NONE = new char[0];
+
+    private final int capacity;
+    private final AtomicReference<Runnable> waiting = new AtomicReference<>(); // producer's resume
+    // replaced by the producer when growing (old chars stay valid for the
+    // consumer) and by the consumer when releasing after completion
+    private volatile char[] ring = NONE;
+    private volatile long head = 0; // next index to read, written by the consumer
+    private volatile long tail = 0; // next index to write, written by the producer
+    private volatile boolean complete = false;
+    private volatile boolean discarded = false; // nobody polls any more
+    private volatile Object result; // decoded value or exception, for structured replies
+    private volatile String status; // "error", "shed" or "fallback"; null for a normal reply
+
+    // consumer side only: text drained from the ring but not yet reported
+    private final StringBuilder pending = new StringBuilder();
+
+    public ReplyBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReplyBuffer(int capacity) {
+        this.capacity = Math.max(16, capacity);
+    }
+
+    /**
+     * Producer: appends text, growing the ring if it is full.
+     */
+    public void write(CharSequence text) {
+        int length = text.length();
+        if (length == 0 || discarded) {
+            return;
+        }
+        long t = tail;
+        char[] r = ring;
+        int used = (int) (t - head);
+        if (r.length - used < length) {
+            r = grow(r, t, used + length);
+        }
+        int mask = r.length - 1;
+        for (int i = 0; i < length; i++) {
+            r[(int) ((t + i) & mask)] = text.charAt(i);
+        }
+        tail = t + length; // publish the whole run at once
+    }
+
+    /**
+     * Producer: true while the unread text is below the capacity, or
+     * nobody reads any more.
+     */
+    @Override
+    public boolean hasRoom() {
+        return discarded || tail - head < capacity;
+    }
+
+    /**
+     * Producer: runs resume once a poll or discard makes room, or at once
+     * if there is room already. Only the latest resume is kept.
+     */
+    @Override
+    public void whenRoom(Runnable resume) {
+        waiting.set(resume);
+        if (hasRoom()) {
+            wake();
+        }
+    }
+
+    private void wake() {
+        Runnable resume = waiting.getAndSet(null);
+        if (resume != null) {
+            // resuming delivers tokens, which must not happen on the polling job thread
+            ForkJoinPool.commonPool().execute(resume);
+        }
+    }
+
+    /*
+     * Producer: copies the unread chars into a larger ring at the same
+     * logical positions. A consumer still holding the old ring reads the
+     * same chars there, since the producer never writes to it again
+     */
+    private char[] grow(char[] old, long t, int needed) {
+        int size = Math.max(INITIAL_SIZE, old.length);
+        while (size < needed) {
+            size <<= 1;
+        }
+        char[] bigger = new char[size];
+        if (old.length > 0) {
+            int oldMask = old.length - 1;
+            int mask = size - 1;
+            for (long i = head; i < t; i++) {
+                bigger[(int) (i & mask)] = old[(int) (i & oldMask)];
+            }
+        }
+        ring = bigger;
+        return bigger;
+    }
+
+    /**
+     * Producer: marks the reply as finished. Everything written before is
+     * visible to a consumer that observes {@link #isComplete()}.
+     */
+    public void complete() {
+        complete = true;
+    }
+
+    public void complete(Object result) {
+        this.result = result;
+        complete = true;
+    }
+
+    /**
+     * Completes a reply that never reached the backend: "shed" when the
+     * request was refused under overload, "fallback" when a local reply
+     * was written instead.
+     */
+    public void completeLocally(String status) {
+        this.status = status;
+        complete = true;
+    }
+
+    /**
+     * Makes further writes no-ops and resumes a producer held back for
+     * room, so a reply whose consumer is gone runs to its end.
+     */
+    public void discard() {
+        discarded = true;
+        wake();
+    }
+
+    @Override
+    public void onChunk(String text) {
+        write(text);
+    }
+
+    @Override
+    public void onComplete(String reply) {
+        complete();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        // put an error marker if an error occurs
+        write("[[ERROR: " + e.getMessage() + "]]");
+        status = "error";
+        complete();
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * "pending" until complete, then "done", "error", "shed" or "fallback".
+     */
+    public String getStatus() {
+        if (!complete) {
+            return "pending";
+        }
+        String s = status;
+        return s == null ? "done" : s;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * Consumer: moves everything readable into the pending text.
+     */
+    private void drain() {
+        long h = head;
+        long t = tail;
+        if (h == t) {
+            return;
+        }
+        char[] r = ring; // read after tail: holds at least [h, t)
+        int mask = r.length - 1;
+        for (long i = h; i < t; i++) {
+            pending.append(r[(int) (i & mask)]);
+        }
+        head = t;
+        if (waiting.get() != null) {
+            wake(); // the ring is empty now
+        }
+    }
+
+    /**
+     * Consumer: true once the reply is complete and every char of it has
+     * been reported; the ring is released then.
+     */
+    private boolean isDrained() {
+        return complete && head == tail && pending.length() == 0;
+    }
+
+    private void releaseIfDrained() {
+        if (isDrained() && ring != NONE) {
+            ring = NONE;
+            pending.setLength(0);
+            pending.trimToSize();
+        }
+    }
+
+    /**
+     * Consumer: reports new text, split according to mode. Partial words or
+     * lines are held back until they are finished or the reply completes.
+     */
+    public List<String> poll(PollMode mode) {
+        // read the flag first: if it is set, the drain below sees every write
+        boolean done = complete;
+        drain();
+        if (pending.length() == 0) {
+            releaseIfDrained();
+            return Collections.emptyList();
+        }
+
+        List<String> chunks = new ArrayList<>();
+        switch (mode) {
+            case CHARS:
+                for (int i = 0; i < pending.length(); i++) {
+                    chunks.add(String.valueOf(pending.charAt(i)));
+                }
+                pending.setLength(0);
+                break;
+            case TEXT:
+                chunks.add(pending.toString());
+                pending.setLength(0);
+                break;
+            case WORDS:
+                splitWords(chunks, done);
+                break;
+            case LINES:
+                splitLines(chunks, done);
+                break;
+        }
+        releaseIfDrained();
+        return chunks;
+    }
+
+    // words keep their trailing whitespace, so concatenating them restores the text
+    private void splitWords(List<String> chunks, boolean done) {
+        int start = 0;
+        int i = 0;
+        int n = pending.length();
+        while (i < n) {
+            while (i < n && !Character.isWhitespace(pending.charAt(i))) {
+                i++;
+            }
+            if (i == n && !done) {
+                break; // unfinished word
+            }
+            while (i < n && Character.isWhitespace(pending.charAt(i))) {
+                i++;
+            }
+            chunks.add(pending.substring(start, i));
+            start = i;
+        }
+        pending.delete(0, start);
+    }
+
+    // lines are reported without their newline, ready for output-print
+    private void splitLines(List<String> chunks, boolean done) {
+        int start = 0;
+        for (int i = 0; i < pending.length(); i++) {
+            if (pending.charAt(i) == '\n') {
+                chunks.add(pending.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (done && start < pending.length()) {
+            chunks.add(pending.substring(start));
+            start = pending.length();
+        }
+        pending.delete(0, start);
+    }
+}
@@ -0,0 +1,38 @@
+package llm.async;
+
+import backend.Throttle;
+
+/**
+ * Receives the output of an async request on the thread delivering its
+ * tokens. As a throttle, the default always has room.
+ */
+public interface ReplyListener extends Throttle {
+    /**
+     * A piece of the reply, in order. The default ignores chunks.
+     */
+    default void onChunk(String text) {
+    }
+
+    void onComplete(String reply);
+
+    /**
+     * The finished reply, both as displayed (the text of the chunks) and
+     * as the model wrote it, before unescaping and wrapping. The default
+     * passes the displayed text on.
+     */
+    default void onComplete(String reply, String raw) {
+        onComplete(reply);
+    }
+
+    void onError(Exception e);
+
+    @Override
+    default boolean hasRoom() {
+        return true;
+    }
+
+    @Override
+    default void whenRoom(Runnable resume) {
+        resume.run();
+    }
+}
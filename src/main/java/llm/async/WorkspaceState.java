@@ -0,0 +1,135 @@
+package llm.async;
+
+import llm.transcript.TranscriptLog;
+import utils.TextPipeline;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Async state owned by one workspace. NetLogo creates a class manager per
+ * workspace, so parallel BehaviorSpace runs each get their own handles,
+ * callbacks, transcript, reply options and overload policy, and clear-all in one run cannot
+ * touch another.
+ */
+public final class WorkspaceState {
+    // per-handle reply buffers; each also carries the completion flag
+    private final ConcurrentHashMap<String, ReplyBuffer> handles = new ConcurrentHashMap<>();
+    // dialogues by the handle of their buffer
+    private final ConcurrentHashMap<String, Dialogue> dialogues = new ConcurrentHashMap<>();
+    private final CallbackQueue callbacks = new CallbackQueue();
+    private final FairScheduler.Lane lane = FairScheduler.shared().newLane();
+    private final TranscriptLog transcript = new TranscriptLog();
+    private volatile TextPipeline.ReplyOptions textOptions = TextPipeline.ReplyOptions.DEFAULTS;
+    private volatile LoadShedder.Policy overloadPolicy = LoadShedder.Policy.DEFAULTS;
+
+    public ReplyBuffer handle(String handle) {
+        return handles.get(handle);
+    }
+
+    public void register(String handle, ReplyBuffer buffer) {
+        handles.put(handle, buffer);
+    }
+
+    /**
+     * Forgets a handle the model is done with, so a long run does not keep
+     * the status of every reply it ever started. A reply still running
+     * writes into the discarded buffer, and a dialogue stops after its
+     * current turn.
+     */
+    public void retire(String handle) {
+        ReplyBuffer buffer = handles.remove(handle);
+        if (buffer != null) {
+            buffer.discard();
+        }
+        Dialogue dialogue = dialogues.remove(handle);
+        if (dialogue != null) {
+            dialogue.cancel();
+        }
+    }
+
+    public Dialogue dialogue(String handle) {
+        return dialogues.get(handle);
+    }
+
+    public void register(String handle, ReplyBuffer buffer, Dialogue dialogue) {
+        handles.put(handle, buffer);
+        dialogues.put(handle, dialogue);
+    }
+
+    /**
+     * The transcript this workspace's sessions write to, kept across
+     * clear-all.
+     */
+    public TranscriptLog transcript() {
+        return transcript;
+    }
+
+    /**
+     * How turtle replies are post-processed, until the next clear-all.
+     */
+    public TextPipeline.ReplyOptions textOptions() {
+        return textOptions;
+    }
+
+    public void setTextOptions(TextPipeline.ReplyOptions options) {
+        textOptions = options;
+    }
+
+    /**
+     * When llm:ask-async sheds requests, until the next clear-all.
+     */
+    public LoadShedder.Policy overloadPolicy() {
+        return overloadPolicy;
+    }
+
+    public void setOverloadPolicy(LoadShedder.Policy policy) {
+        overloadPolicy = policy;
+    }
+
+    public CallbackQueue callbacks() {
+        return callbacks;
+    }
+
+    public void submit(Runnable task) {
+        lane.submit(task);
+    }
+
+    /**
+     * Queues a task that starts asynchronous work, keeping its place in
+     * the scheduler until the work completes.
+     */
+    public void submitAsync(Supplier<? extends CompletionStage<?>> task) {
+        lane.submitAsync(task);
+    }
+
+    /**
+     * Requests submitted but not yet started.
+     */
+    public int queued() {
+        return lane.queued();
+    }
+
+    /**
+     * Forgets every handle and callback, drops requests that have not
+     * started and restores the default reply options and overload policy. Running requests write into discarded buffers, which never
+     * block them, and dialogues stop after their current turn.
+     */
+    public void clear() {
+        dialogues.values().forEach(Dialogue::cancel);
+        lane.clear();
+        handles.values().forEach(ReplyBuffer::discard);
+        handles.clear();
+        dialogues.clear();
+        callbacks.clear();
+        textOptions = TextPipeline.ReplyOptions.DEFAULTS;
+        overloadPolicy = LoadShedder.Policy.DEFAULTS;
+    }
+
+    public void close() {
+        lane.close();
+        clear();
+        transcript.stop();
+    }
+}
@@ -0,0 +1,127 @@
+package llm.cascade;
+
+import backend.Backends;
+import metrics.Stats;
+import ollama.GenerateRequest;
+import ollama.TokenData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Routes a request through models from small to large. Each tier
+ * generates a full reply; the first reply the validator accepts is kept,
+ * and a rejected one escalates to the next tier. The last tier's reply is
+ * kept either way. Since most turns are easy, most are served by the
+ * small model at its latency.
+ * Attempts, accepted replies and latency are tallied per model for
+ * llm:cascade-stats, and timed in llm:stats as "cascade.<model>".
+ */
+public final class ModelCascade {
+    private static final Map<String, Tally> tallies = new ConcurrentHashMap<>();
+
+    private final List<String> models; // small to large; null is the backend's default model
+
+    public ModelCascade(List<String> models) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("A cascade needs at least one model");
+        }
+        this.models = Collections.unmodifiableList(new ArrayList<>(models));
+    }
+
+    public List<String> getModels() {
+        return models;
+    }
+
+    /**
+     * Sees the tokens of every tier as they stream, and each escalation.
+     * After an escalation the tokens seen so far are void.
+     */
+    public interface Listener {
+        void onToken(TokenData token);
+
+        default void onEscalate(String rejectedModel, String reason) {
+        }
+    }
+
+    /**
+     * Generates with each tier in turn and reports the kept reply. The
+     * request's model is overwritten per tier.
+     */
+    public String generate(GenerateRequest request, ReplyValidator validator, Listener listener)
+            throws Exception {
+        String reply = null;
+        for (int tier = 0; tier < models.size(); tier++) {
+            String model = models.get(tier);
+            long start = System.nanoTime();
+            StringBuilder text = new StringBuilder();
+            try (Stream<TokenData> tokens = Backends.ask(request.setModel(model))) {
+                tokens.forEach(token -> {
+                    text.append(token.getToken());
+                    listener.onToken(token);
+                });
+            }
+            reply = text.toString();
+            String reason = validator.validate(reply);
+            long latency = System.nanoTime() - start;
+            tally(model).record(latency, reason == null);
+            Stats.time("cascade." + name(model), latency);
+            if (reason == null) {
+                return reply;
+            }
+            if (tier + 1 < models.size()) {
+                Stats.count("cascade.escalations", 1);
+                listener.onEscalate(name(model), reason);
+            }
+        }
+        return reply;
+    }
+
+    private static String name(String model) {
+        return model == null ? "default" : model;
+    }
+
+    private static Tally tally(String model) {
+        return tallies.computeIfAbsent(name(model), m -> new Tally());
+    }
+
+    /**
+     * One row per model as [model attempts accepted hit-rate mean-ms],
+     * sorted by name.
+     */
+    public static List<List<Object>> report() {
+        List<List<Object>> rows = new ArrayList<>();
+        new TreeMap<>(tallies).forEach((model, tally) -> {
+            long attempts = tally.attempts.sum();
+            long accepted = tally.accepted.sum();
+            rows.add(List.of(model, (double) attempts, (double) accepted,
+                    attempts == 0 ? 0.0 : accepted / (double) attempts,
+                    attempts == 0 ? 0.0 : tally.nanos.sum() / (double) attempts / 1e6));
+        });
+        return rows;
+    }
+
+    public static void resetStats() {
+        tallies.clear();
+    }
+
+    private static final class Tally {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder accepted = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void record(long latency, boolean ok) {
+            attempts.increment();
+            nanos.add(latency);
+            if (ok) {
+                accepted.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package llm.cascade;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/*
+ * Structure of code-tab source, which checkCommandSyntax cannot compile:
+ * brackets and parentheses balance within each procedure, every to or
+ * to-report has a name and is closed by end before the next one starts,
+ * and no end stands alone. Comments and strings are skipped. Reports null
+ * if the structure holds, otherwise what is wrong
+ */
+final class ProcedureCheck {
+    private ProcedureCheck() {
+    }
+
+    static String check(String code) {
+        Deque<Character> open = new ArrayDeque<>();
+        String procedure = null; // name of the procedure being read
+        boolean expectName = false;
+        int line = 1;
+        int i = 0;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                while (i < code.length() && code.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '"') {
+                if (expectName) {
+                    return "procedure without a name on line " + line;
+                }
+                i++;
+                while (i < code.length() && code.charAt(i) != '"') {
+                    if (code.charAt(i) == '\n') {
+                        return "unterminated string on line " + line;
+                    }
+                    i += code.charAt(i) == '\\' ? 2 : 1;
+                }
+                if (i >= code.length()) {
+                    return "unterminated string on line " + line;
+                }
+                i++;
+            } else if (c == '[' || c == '(') {
+                if (expectName) {
+                    return "procedure without a name on line " + line;
+                }
+                open.push(c);
+                i++;
+            } else if (c == ']' || c == ')') {
+                char expected = c == ']' ? '[' : '(';
+                if (open.isEmpty() || open.pop() != expected) {
+                    return "unbalanced " + c + " on line " + line;
+                }
+                i++;
+            } else {
+                int start = i;
+                while (i < code.length() && !Character.isWhitespace(code.charAt(i))
+                        && "[]();\"".indexOf(code.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = code.substring(start, i).toLowerCase(Locale.ROOT);
+                if (expectName) {
+                    if (isKeyword(word) || Character.isDigit(word.charAt(0))) {
+                        return "procedure without a name on line " + line;
+                    }
+                    procedure = word;
+                    expectName = false;
+                } else if (word.equals("to") || word.equals("to-report")) {
+                    if (procedure != null) {
+                        return "procedure " + procedure + " has no end before line " + line;
+                    }
+                    if (!open.isEmpty()) {
+                        return "unclosed " + open.peek() + " before line " + line;
+                    }
+                    expectName = true;
+                } else if (word.equals("end")) {
+                    if (procedure == null) {
+                        return "end without to on line " + line;
+                    }
+                    if (!open.isEmpty()) {
+                        return "unclosed " + open.peek() + " in procedure " + procedure;
+                    }
+                    procedure = null;
+                }
+            }
+        }
+        if (expectName) {
+            return "procedure without a name on line " + line;
+        }
+        if (procedure != null) {
+            return "procedure " + procedure + " has no end";
+        }
+        if (!open.isEmpty()) {
+            return "unclosed " + open.peek();
+        }
+        return null;
+    }
+
+    private static boolean isKeyword(String word) {
+        return word.equals("to") || word.equals("to-report") || word.equals("end");
+    }
+}
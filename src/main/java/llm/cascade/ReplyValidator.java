@@ -0,0 +1,119 @@
+package llm.cascade;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.nlogo.api.Workspace;
+import scala.Option;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a reply is good enough to keep, or whether the cascade
+ * should ask a larger model. Reports null to accept, otherwise the reason
+ * for rejecting.
+ */
+@FunctionalInterface
+public interface ReplyValidator {
+    // the copilot's reply format, as ChatPane.extractAndStoreCode reads it
+    Pattern CODE_BLOCK = Pattern.compile("```(?:netlogo|nlogo)?\\s*\\n?(.*?)```",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    Pattern PROCEDURE = Pattern.compile("^\\s*to(-report)?\\s", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+
+    String validate(String reply);
+
+    ReplyValidator ACCEPT = reply -> null;
+
+    /**
+     * Both validators must accept; the first rejection is reported.
+     */
+    default ReplyValidator and(ReplyValidator other) {
+        return reply -> {
+            String reason = validate(reply);
+            return reason != null ? reason : other.validate(reply);
+        };
+    }
+
+    /**
+     * The reply must parse as JSON and, for a schema, match its types,
+     * required properties and enums (see SchemaCheck).
+     */
+    static ReplyValidator json(JsonElement format) {
+        return reply -> {
+            if (reply.trim().isEmpty()) {
+                return "no JSON"; // would parse as JSON null
+            }
+            JsonElement value;
+            try {
+                value = JsonParser.parseString(reply);
+            } catch (JsonParseException e) {
+                return "not valid JSON";
+            }
+            return format != null && format.isJsonObject()
+                    ? SchemaCheck.check(format.getAsJsonObject(), value, "$")
+                    : null;
+        };
+    }
+
+    /**
+     * The reply must hold a fenced code block that compiles as commands in
+     * the workspace. The compiler runs through waitForResult, so on the
+     * thread the workspace expects, whichever thread validates. Procedure
+     * definitions cannot be compiled without recompiling the model, so
+     * only their structure is checked (see ProcedureCheck).
+     */
+    static ReplyValidator code(Workspace workspace) {
+        return reply -> {
+            Matcher matcher = CODE_BLOCK.matcher(reply);
+            if (!matcher.find()) {
+                return "no code block";
+            }
+            String code = matcher.group(1).trim();
+            if (code.isEmpty()) {
+                return "empty code block";
+            }
+            if (PROCEDURE.matcher(code).find()) {
+                String problem = ProcedureCheck.check(code);
+                return problem != null ? "malformed procedures: " + problem : null;
+            }
+            try {
+                Option<String> error = workspace.waitForResult(() -> workspace.checkCommandSyntax(code));
+                return error.isDefined() ? "does not compile: " + error.get() : null;
+            } catch (Exception e) {
+                return "does not compile: " + e.getMessage();
+            }
+        };
+    }
+
+    /**
+     * The reply must contain a match of the regular expression.
+     */
+    static ReplyValidator matching(String regex) {
+        Pattern pattern = Pattern.compile(regex, Pattern.DOTALL);
+        return reply -> pattern.matcher(reply).find() ? null : "does not match " + regex;
+    }
+
+    /**
+     * Parses a validator name as given to llm:set-cascade: "none", "json",
+     * "code" or "regex:<pattern>". The workspace is only used by "code".
+     */
+    static ReplyValidator parse(String spec, Workspace workspace) {
+        String trimmed = spec.trim();
+        if (trimmed.startsWith("regex:")) {
+            return matching(trimmed.substring("regex:".length()));
+        }
+        Map<String, ReplyValidator> named = Map.of(
+                "", ACCEPT,
+                "none", ACCEPT,
+                "json", json(null),
+                "code", code(workspace));
+        ReplyValidator validator = named.get(trimmed);
+        if (validator == null) {
+            throw new IllegalArgumentException(
+                    "Unknown validator \"" + spec + "\", expected none, json, code or regex:<pattern>");
+        }
+        return validator;
+    }
+}
@@ -0,0 +1,95 @@
+package llm.cascade;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Map;
+
+/*
+ * The subset of JSON schema that format constraints use: type, required,
+ * properties, items and enum. Unknown keywords pass. Reports null if the
+ * value matches, otherwise where and why it does not
+ */
+final class SchemaCheck {
+    private SchemaCheck() {
+    }
+
+    static String check(JsonObject schema, JsonElement value, String path) {
+        JsonElement type = schema.get("type");
+        if (type != null && type.isJsonPrimitive() && !hasType(value, type.getAsString())) {
+            return path + " is not " + type.getAsString();
+        }
+        JsonElement options = schema.get("enum");
+        if (options != null && options.isJsonArray() && !options.getAsJsonArray().contains(value)) {
+            return path + " is not one of " + options;
+        }
+        if (value.isJsonObject()) {
+            JsonObject object = value.getAsJsonObject();
+            JsonElement required = schema.get("required");
+            if (required != null && required.isJsonArray()) {
+                for (JsonElement name : required.getAsJsonArray()) {
+                    if (!object.has(name.getAsString())) {
+                        return path + "." + name.getAsString() + " is missing";
+                    }
+                }
+            }
+            JsonElement properties = schema.get("properties");
+            if (properties != null && properties.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> property : properties.getAsJsonObject().entrySet()) {
+                    JsonElement field = object.get(property.getKey());
+                    if (field != null && property.getValue().isJsonObject()) {
+                        String error = check(property.getValue().getAsJsonObject(), field,
+                                path + "." + property.getKey());
+                        if (error != null) {
+                            return error;
+                        }
+                    }
+                }
+            }
+        }
+        JsonElement items = schema.get("items");
+        if (value.isJsonArray() && items != null && items.isJsonObject()) {
+            JsonArray array = value.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                String error = check(items.getAsJsonObject(), array.get(i), path + "[" + i + "]");
+                if (error != null) {
+                    return error;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasType(JsonElement value, String type) {
+        switch (type) {
+            case "object":
+                return value.isJsonObject();
+            case "array":
+                return value.isJsonArray();
+            case "null":
+                return value.isJsonNull();
+            case "string":
+            case "number":
+            case "integer":
+            case "boolean":
+                if (!value.isJsonPrimitive()) {
+                    return false;
+                }
+                JsonPrimitive primitive = value.getAsJsonPrimitive();
+                if (type.equals("string")) {
+                    return primitive.isString();
+                }
+                if (type.equals("boolean")) {
+                    return primitive.isBoolean();
+                }
+                if (!primitive.isNumber()) {
+                    return false;
+                }
+                return type.equals("number") || primitive.getAsDouble() == Math.rint(primitive.getAsDouble());
+            default:
+                return true;
+        }
+    }
+}
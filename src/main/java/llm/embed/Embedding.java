@@ -0,0 +1,97 @@
+package llm.embed;
+
+import org.nlogo.core.ExtensionObject;
+
+import java.util.Arrays;
+
+/**
+ * Immutable embedding vector held as a float array, with its norm computed
+ * once so cosine similarity is a single dot product.
+ */
+public final class Embedding implements ExtensionObject {
+    private final float[] values;
+    private final double norm;
+
+    public Embedding(float[] values) {
+        this.values = values;
+        this.norm = Math.sqrt(dot(values, values));
+    }
+
+    public int dimensions() {
+        return values.length;
+    }
+
+    /**
+     * Direct access to the backing array; callers must not modify it.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    public double norm() {
+        return norm;
+    }
+
+    public double cosine(Embedding other) {
+        if (values.length != other.values.length) {
+            throw new IllegalArgumentException(
+                    "Vector sizes differ: " + values.length + " vs " + other.values.length);
+        }
+        if (norm == 0 || other.norm == 0) {
+            return 0;
+        }
+        return dot(values, other.values) / (norm * other.norm);
+    }
+
+    static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public static Embedding parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return new Embedding(new float[0]);
+        }
+        String[] parts = trimmed.split(" ");
+        float[] values = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Float.parseFloat(parts[i]);
+        }
+        return new Embedding(values);
+    }
+
+    @Override
+    public String getExtensionName() {
+        return "llm";
+    }
+
+    @Override
+    public String getNLTypeName() {
+        return "vector";
+    }
+
+    @Override
+    public boolean recursivelyEqual(Object obj) {
+        return obj instanceof Embedding && Arrays.equals(values, ((Embedding) obj).values);
+    }
+
+    @Override
+    public String dump(boolean readable, boolean exporting, boolean references) {
+        if (exporting) {
+            // space separated floats, read back by Embedding.parse
+            StringBuilder dump = new StringBuilder(values.length * 10);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    dump.append(' ');
+                }
+                dump.append(values[i]);
+            }
+            return dump.toString();
+        }
+        return values.length + "-dimensional vector";
+    }
+}
@@ -0,0 +1,96 @@
+package llm.embed;
+
+import backend.Backends;
+
+import java.util.*;
+
+/**
+ * LRU cache of embeddings keyed by a 64-bit hash of the text.
+ * Lookups for many texts are answered from the cache first and all misses
+ * are fetched from the backend in one batched call.
+ */
+public final class EmbeddingCache {
+    private static final int DEFAULT_CAPACITY = 10_000;
+
+    private static int capacity = DEFAULT_CAPACITY;
+    private static final LinkedHashMap<Long, Embedding> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Embedding> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private EmbeddingCache() {
+    }
+
+    public static Embedding embed(String text) throws Exception {
+        return embedAll(Collections.singletonList(text)).get(0);
+    }
+
+    public static List<Embedding> embedAll(List<String> texts) throws Exception {
+        Embedding[] result = new Embedding[texts.size()];
+        // misses, deduplicated by key, in first-seen order
+        Map<Long, String> missing = new LinkedHashMap<>();
+
+        synchronized (cache) {
+            for (int i = 0; i < texts.size(); i++) {
+                long key = hash(texts.get(i));
+                Embedding hit = cache.get(key);
+                if (hit != null) {
+                    result[i] = hit;
+                } else {
+                    missing.putIfAbsent(key, texts.get(i));
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return Arrays.asList(result);
+        }
+
+        // network call outside the lock
+        List<float[]> vectors = Backends.get().embed(new ArrayList<>(missing.values()));
+        Map<Long, Embedding> fetched = new HashMap<>();
+        Iterator<float[]> it = vectors.iterator();
+        for (Long key : missing.keySet()) {
+            fetched.put(key, new Embedding(it.next()));
+        }
+
+        synchronized (cache) {
+            cache.putAll(fetched);
+        }
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] == null) {
+                result[i] = fetched.get(hash(texts.get(i)));
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    public static void setCapacity(int entries) {
+        synchronized (cache) {
+            capacity = Math.max(0, entries);
+            // shrink immediately, eldest first
+            Iterator<Long> it = cache.keySet().iterator();
+            while (cache.size() > capacity && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars
+    static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
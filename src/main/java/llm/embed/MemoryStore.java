@@ -0,0 +1,268 @@
+package llm.embed;
+
+import backend.Backends;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounded long-term memory for one session.
+ * Each memory is a text plus its embedding, stored as one row of a
+ * contiguous float matrix, which doubles as rows are added until it holds
+ * the capacity, so a generous capacity costs nothing until used. Retrieval scores every row against the query
+ * in-process and keeps the top k. When full, the memory that was least
+ * recently added or recalled is overwritten. After the backend changes,
+ * the stored texts are embedded again before the next use, since the old
+ * vectors live in another model's space.
+ */
+public final class MemoryStore {
+    private static final int INITIAL_ROWS = 16;
+    private static final int MAX_CELLS = Integer.MAX_VALUE - 8; // largest float array the JVM allocates
+
+    private final int capacity;
+    private final int topK;
+
+    private int dimensions = -1; // fixed by the first embedding
+    private int rows = 0; // allocated rows, at most capacity
+    private float[] matrix = new float[0]; // rows x dimensions, row major
+    private float[] norms = new float[0];
+    private long[] lastUsed = new long[0];
+    private String[] texts = new String[0];
+    private int count = 0;
+    private long clock = 0;
+    private int epoch = Backends.epoch(); // backend the vectors came from
+
+    public MemoryStore(int capacity, int topK) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memory capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.topK = Math.max(0, topK);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Embeds and stores a memory. The embedding call bypasses the shared
+     * cache, since remembered turns are rarely embedded twice.
+     */
+    public void remember(String text) throws Exception {
+        refresh();
+        float[] vector = Backends.get().embed(Collections.singletonList(text)).get(0);
+        add(text, vector);
+    }
+
+    public synchronized void add(String text, float[] vector) {
+        if (dimensions < 0) {
+            dimensions = vector.length;
+            matrix = new float[cells(rows, dimensions)];
+        } else if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                    "Memory vectors have " + dimensions + " dimensions, got " + vector.length);
+        }
+
+        if (count == rows && rows < capacity) {
+            grow();
+        }
+        int row = count < capacity ? count++ : coldestRow();
+        System.arraycopy(vector, 0, matrix, row * dimensions, dimensions);
+        norms[row] = (float) Math.sqrt(Embedding.dot(vector, vector));
+        texts[row] = text;
+        lastUsed[row] = ++clock;
+    }
+
+    /**
+     * Reports up to k stored texts, most similar to the query first.
+     */
+    public List<String> recall(String query, int k) throws Exception {
+        if (k <= 0 || size() == 0) {
+            return Collections.emptyList();
+        }
+        refresh();
+        return nearest(EmbeddingCache.embed(query), k);
+    }
+
+    public synchronized List<String> nearest(Embedding query, int k) {
+        if (count == 0 || k <= 0) {
+            return Collections.emptyList();
+        }
+        if (query.dimensions() != dimensions) {
+            throw new IllegalArgumentException(
+                    "Memory vectors have " + dimensions + " dimensions, got " + query.dimensions());
+        }
+        float[] q = query.values();
+        double qNorm = query.norm();
+        k = Math.min(k, count);
+
+        // insertion into a small sorted array beats a heap for the usual k
+        int[] bestRows = new int[k];
+        double[] bestScores = new double[k];
+        int found = 0;
+        for (int row = 0; row < count; row++) {
+            double score = score(row, q, qNorm);
+            if (found < k) {
+                found++;
+            } else if (score <= bestScores[k - 1]) {
+                continue;
+            }
+            int i = found - 1;
+            while (i > 0 && bestScores[i - 1] < score) {
+                bestScores[i] = bestScores[i - 1];
+                bestRows[i] = bestRows[i - 1];
+                i--;
+            }
+            bestScores[i] = score;
+            bestRows[i] = row;
+        }
+
+        List<String> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            lastUsed[bestRows[i]] = ++clock;
+            result.add(texts[bestRows[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Prefixes the prompt with the top-k memories relevant to it.
+     */
+    public String augment(String prompt) throws Exception {
+        List<String> memories = recall(prompt, topK);
+        if (memories.isEmpty()) {
+            return prompt;
+        }
+        StringBuilder augmented = new StringBuilder("Things you remember from earlier conversations:\n");
+        for (String memory : memories) {
+            augmented.append("- ").append(memory).append('\n');
+        }
+        return augmented.append('\n').append(prompt).toString();
+    }
+
+    /*
+     * Re-embeds every stored text with the current backend, in one batch,
+     * if the vectors came from an earlier one
+     */
+    private synchronized void refresh() throws Exception {
+        int current = Backends.epoch();
+        if (current == epoch) {
+            return;
+        }
+        List<float[]> vectors = count == 0
+                ? Collections.emptyList()
+                : Backends.get().embed(Arrays.asList(texts).subList(0, count));
+        dimensions = vectors.isEmpty() ? -1 : vectors.get(0).length;
+        matrix = dimensions < 0 ? new float[0] : new float[cells(rows, dimensions)];
+        for (int row = 0; row < count; row++) {
+            float[] vector = vectors.get(row);
+            if (vector.length != dimensions) {
+                throw new IllegalArgumentException(
+                        "Memory vectors have " + dimensions + " dimensions, got " + vector.length);
+            }
+            System.arraycopy(vector, 0, matrix, row * dimensions, dimensions);
+            norms[row] = (float) Math.sqrt(Embedding.dot(vector, vector));
+        }
+        epoch = current;
+    }
+
+    /*
+     * Doubles the rows, up to the capacity
+     */
+    private void grow() {
+        int grown = (int) Math.min(capacity, Math.max(INITIAL_ROWS, 2L * rows));
+        matrix = Arrays.copyOf(matrix, cells(grown, dimensions));
+        norms = Arrays.copyOf(norms, grown);
+        lastUsed = Arrays.copyOf(lastUsed, grown);
+        texts = Arrays.copyOf(texts, grown);
+        rows = grown;
+    }
+
+    // the matrix size, checked since rows x dimensions can exceed an int
+    private static int cells(int rows, int dimensions) {
+        long cells = (long) rows * dimensions;
+        if (cells > MAX_CELLS) {
+            throw new IllegalStateException(
+                    "Memory of " + rows + " vectors of " + dimensions + " dimensions is too large");
+        }
+        return (int) cells;
+    }
+
+    private double score(int row, float[] q, double qNorm) {
+        if (norms[row] == 0 || qNorm == 0) {
+            return 0;
+        }
+        int base = row * dimensions;
+        double dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += matrix[base + i] * q[i];
+        }
+        return dot / (norms[row] * qNorm);
+    }
+
+    private int coldestRow() {
+        int coldest = 0;
+        for (int row = 1; row < count; row++) {
+            if (lastUsed[row] < lastUsed[coldest]) {
+                coldest = row;
+            }
+        }
+        return coldest;
+    }
+
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(topK);
+        out.writeInt(dimensions);
+        out.writeInt(count);
+        for (int row = 0; row < count; row++) {
+            byte[] text = texts[row].getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            out.writeLong(lastUsed[row]);
+            int base = row * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                out.writeFloat(matrix[base + i]);
+            }
+        }
+    }
+
+    public static MemoryStore readFrom(DataInput in) throws IOException {
+        int capacity = in.readInt();
+        int topK = in.readInt();
+        int dimensions = in.readInt();
+        int count = in.readInt();
+        if (capacity <= 0 || count < 0 || count > capacity) {
+            throw new IOException("Corrupt memory store");
+        }
+        MemoryStore store = new MemoryStore(capacity, topK);
+        for (int row = 0; row < count; row++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            long used = in.readLong();
+            float[] vector = new float[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = in.readFloat();
+            }
+            store.add(text, vector);
+            store.lastUsed[row] = used;
+            store.clock = Math.max(store.clock, used);
+        }
+        return store;
+    }
+}
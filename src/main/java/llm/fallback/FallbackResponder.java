@@ -0,0 +1,174 @@
+package llm.fallback;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Instant local replies for requests shed under overload.
+ * A word-level Markov chain (two words of state) per session role learns
+ * from every reply the backend produces and from transcript files passed
+ * to seed. Until a role has learned anything, a fixed template answers.
+ * The replies are chatter, not answers; they keep a simulation moving
+ * while the server catches up.
+ */
+public final class FallbackResponder {
+    private static final int MAX_TRANSITIONS = 50_000; // per role; later replies are not learned
+    private static final int MAX_WORDS = 40;
+    private static final String EDGE = ""; // start and end of a reply
+    private static final List<String> TURTLE_TEMPLATES = List.of(
+            "Hello there, friend!",
+            "Nice to see you around here.",
+            "I was just thinking the same thing.",
+            "Let's talk again soon!");
+    private static final List<String> ASSISTANT_TEMPLATES = List.of(
+            "The model is busy right now, please try again in a moment.");
+
+    private static final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    private static final Random random = new Random();
+
+    private FallbackResponder() {
+    }
+
+    public static void learn(String role, String text) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        chains.computeIfAbsent(role, r -> new Chain()).learn(text.trim().split("\\s+"));
+    }
+
+    public static String reply(String role) {
+        Chain chain = chains.get(role);
+        String text = chain == null ? null : chain.generate();
+        if (text != null) {
+            return text;
+        }
+        List<String> templates = "assistant".equals(role) ? ASSISTANT_TEMPLATES : TURTLE_TEMPLATES;
+        synchronized (random) {
+            return templates.get(random.nextInt(templates.size()));
+        }
+    }
+
+    /**
+     * Learns the role's successful replies from a transcript file, or from
+     * every transcript file in a directory, as written by
+     * llm:start-transcript. Reports the number of replies learned.
+     */
+    public static int seed(File source, String role) throws IOException {
+        if (!source.exists()) {
+            throw new FileNotFoundException(source.getPath());
+        }
+        File[] files = source.isDirectory()
+                ? source.listFiles((dir, name) -> name.endsWith(".ndjson") || name.endsWith(".ndjson.gz"))
+                : new File[] { source };
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files);
+        int learned = 0;
+        for (File file : files) {
+            learned += seedFile(file, role);
+        }
+        return learned;
+    }
+
+    private static int seedFile(File file, String role) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        int learned = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject record;
+                try {
+                    record = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    continue; // torn last line of a crashed run
+                }
+                if (isTrue(record.get("ok")) && isString(record.get("reply")) && isString(record.get("role"))
+                        && record.get("role").getAsString().equals(role)) {
+                    learn(role, record.get("reply").getAsString());
+                    learned++;
+                }
+            }
+        }
+        return learned;
+    }
+
+    private static boolean isTrue(JsonElement element) {
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isBoolean()
+                && element.getAsBoolean();
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    public static void clear() {
+        chains.clear();
+    }
+
+    /*
+     * Successors are stored with repetition, so picking one uniformly
+     * follows the observed frequencies
+     */
+    private static final class Chain {
+        private final Map<String, List<String>> next = new HashMap<>(); // "w1 w2" -> following words
+        private int transitions = 0;
+
+        synchronized void learn(String[] words) {
+            if (transitions + words.length + 1 > MAX_TRANSITIONS) {
+                return;
+            }
+            String first = EDGE;
+            String second = EDGE;
+            for (int i = 0; i <= words.length; i++) {
+                String word = i < words.length ? words[i] : EDGE;
+                next.computeIfAbsent(first + " " + second, k -> new ArrayList<>()).add(word);
+                transitions++;
+                first = second;
+                second = word;
+            }
+        }
+
+        synchronized String generate() {
+            if (transitions == 0) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder();
+            String first = EDGE;
+            String second = EDGE;
+            for (int i = 0; i < MAX_WORDS; i++) {
+                List<String> options = next.get(first + " " + second);
+                if (options == null) {
+                    break;
+                }
+                String word;
+                synchronized (random) {
+                    word = options.get(random.nextInt(options.size()));
+                }
+                if (word.equals(EDGE)) {
+                    break;
+                }
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(word);
+                first = second;
+                second = word;
+            }
+            return text.length() == 0 ? null : text.toString();
+        }
+    }
+}
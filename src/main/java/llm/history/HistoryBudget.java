@@ -0,0 +1,110 @@
+package llm.history;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global memory budget shared by every {@link MessageLog}.
+ * When the resident history exceeds the limit, the least recently used logs
+ * are spilled to disk until usage drops below three quarters of the limit.
+ */
+public final class HistoryBudget {
+    private static final long DEFAULT_LIMIT_BYTES = 64L * 1024 * 1024;
+    private static final long MIN_SPILL_BYTES = 4 * 1024; // smaller logs are not worth a file
+
+    private static final AtomicLong resident = new AtomicLong();
+    private static final AtomicLong clock = new AtomicLong();
+    private static final Set<WeakReference<MessageLog>> logs = new HashSet<>(); // guarded by itself
+    private static final ReferenceQueue<MessageLog> collected = new ReferenceQueue<>();
+    private static volatile long limitBytes = DEFAULT_LIMIT_BYTES;
+    private static Path spillDirectory;
+
+    private HistoryBudget() {
+    }
+
+    public static void setLimit(long bytes) {
+        limitBytes = Math.max(0, bytes);
+        enforce();
+    }
+
+    public static long getLimit() {
+        return limitBytes;
+    }
+
+    public static long residentBytes() {
+        return resident.get();
+    }
+
+    static long tick() {
+        return clock.incrementAndGet();
+    }
+
+    static void charge(long delta) {
+        resident.addAndGet(delta);
+    }
+
+    static void register(MessageLog log) {
+        synchronized (logs) {
+            // forget collected logs here too, trim only runs over budget
+            Reference<? extends MessageLog> dead;
+            while ((dead = collected.poll()) != null) {
+                logs.remove(dead);
+            }
+            logs.add(new WeakReference<>(log, collected));
+        }
+    }
+
+    static void enforce() {
+        if (resident.get() > limitBytes) {
+            trim();
+        }
+    }
+
+    private static synchronized void trim() {
+        long target = limitBytes / 4 * 3;
+        List<MessageLog> candidates = new ArrayList<>();
+        synchronized (logs) {
+            Iterator<WeakReference<MessageLog>> it = logs.iterator();
+            while (it.hasNext()) {
+                MessageLog log = it.next().get();
+                if (log == null) {
+                    it.remove();
+                } else if (!log.isSpilled() && log.residentBytes() >= MIN_SPILL_BYTES) {
+                    candidates.add(log);
+                }
+            }
+        }
+        // coldest first
+        candidates.sort(Comparator.comparingLong(log -> log.lastAccess));
+        for (MessageLog log : candidates) {
+            if (resident.get() <= target) {
+                break;
+            }
+            try {
+                log.spill();
+            } catch (IOException e) {
+                System.err.println("History spill failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    static synchronized Path spillDirectory() throws IOException {
+        if (spillDirectory == null) {
+            spillDirectory = Files.createTempDirectory("llm-history");
+            spillDirectory.toFile().deleteOnExit();
+        }
+        return spillDirectory;
+    }
+}
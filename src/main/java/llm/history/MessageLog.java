@@ -0,0 +1,296 @@
+package llm.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact append-only message history for a single session.
+ * Roles are interned into one byte per message, contents live in a single
+ * UTF-8 buffer addressed by an end-offset index. When the global
+ * {@link HistoryBudget} is exceeded, the content buffer of cold logs is
+ * spilled to a memory-mapped file and paged back in on the next append.
+ */
+public final class MessageLog {
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INDEX_SLOT_BYTES = Integer.BYTES + 1;
+
+    private byte[] roles = new byte[8];
+    private int[] ends = new int[8]; // exclusive end offset of each message
+    private int count = 0;
+
+    private byte[] data = new byte[INITIAL_CAPACITY]; // null while spilled
+    private int length = 0;
+    private MappedByteBuffer mapped; // non-null while spilled
+
+    private final Accounting accounting = new Accounting();
+    volatile long lastAccess = HistoryBudget.tick();
+
+    public MessageLog() {
+        CLEANER.register(this, accounting);
+        HistoryBudget.register(this);
+        charge(footprint());
+    }
+
+    public void append(String role, String content) {
+        byte roleId = RoleTable.intern(role);
+        byte[] bytes = (content == null ? "" : content).getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            long before = footprint();
+            pageIn();
+            if (count == ends.length) {
+                roles = Arrays.copyOf(roles, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            if (length + bytes.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + bytes.length));
+            }
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+            roles[count] = roleId;
+            ends[count] = length;
+            count++;
+            touch();
+            charge(footprint() - before);
+        }
+        // never call into the budget while holding this log's lock
+        HistoryBudget.enforce();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized String role(int index) {
+        checkIndex(index);
+        touch();
+        return RoleTable.name(roles[index]);
+    }
+
+    public synchronized String content(int index) {
+        checkIndex(index);
+        touch();
+        int start = index == 0 ? 0 : ends[index - 1];
+        int len = ends[index] - start;
+        if (data != null) {
+            return new String(data, start, len, StandardCharsets.UTF_8);
+        }
+        // cold log: read straight from the mapping without paging back in
+        byte[] out = new byte[len];
+        mapped.get(start, out, 0, len);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read-only view over the message contents, decoded lazily on access.
+     */
+    public List<String> contents() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return content(index);
+            }
+
+            @Override
+            public int size() {
+                return MessageLog.this.size();
+            }
+        };
+    }
+
+    /**
+     * Writes the log as a local role table, per-message role ids and end
+     * offsets, then the raw UTF-8 contents. Spilled logs are copied straight
+     * from their mapping.
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        int[] localIds = new int[256];
+        Arrays.fill(localIds, -1);
+        List<String> names = new ArrayList<>();
+        byte[] localRoles = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int global = roles[i] & 0xFF;
+            if (localIds[global] < 0) {
+                localIds[global] = names.size();
+                names.add(RoleTable.name(roles[i]));
+            }
+            localRoles[i] = (byte) localIds[global];
+        }
+
+        out.writeShort(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+        out.writeInt(count);
+        out.write(localRoles);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(ends[i]);
+        }
+        out.writeInt(length);
+        if (data != null) {
+            out.write(data, 0, length);
+        } else {
+            byte[] chunk = new byte[8192];
+            for (int pos = 0; pos < length; pos += chunk.length) {
+                int n = Math.min(chunk.length, length - pos);
+                mapped.get(pos, chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+    }
+
+    public static MessageLog readFrom(DataInput in) throws IOException {
+        int roleCount = in.readUnsignedShort();
+        byte[] globalIds = new byte[roleCount];
+        for (int i = 0; i < roleCount; i++) {
+            globalIds[i] = RoleTable.intern(in.readUTF());
+        }
+
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupt history: negative message count");
+        }
+        byte[] r = new byte[Math.max(8, n)];
+        in.readFully(r, 0, n);
+        int[] e = new int[Math.max(8, n)];
+        int previous = 0;
+        for (int i = 0; i < n; i++) {
+            int local = r[i] & 0xFF;
+            if (local >= roleCount) {
+                throw new IOException("Corrupt history: unknown role id " + local);
+            }
+            r[i] = globalIds[local];
+            e[i] = in.readInt();
+            if (e[i] < previous) {
+                throw new IOException("Corrupt history: offsets out of order");
+            }
+            previous = e[i];
+        }
+
+        int len = in.readInt();
+        if (len != previous) {
+            throw new IOException("Corrupt history: content length mismatch");
+        }
+        byte[] d = new byte[Math.max(INITIAL_CAPACITY, len)];
+        in.readFully(d, 0, len);
+
+        MessageLog log = new MessageLog();
+        log.load(r, e, n, d, len);
+        HistoryBudget.enforce();
+        return log;
+    }
+
+    private synchronized void load(byte[] roles, int[] ends, int count, byte[] data, int length) {
+        long before = footprint();
+        this.roles = roles;
+        this.ends = ends;
+        this.count = count;
+        this.data = data;
+        this.length = length;
+        charge(footprint() - before);
+    }
+
+    public synchronized boolean isSpilled() {
+        return data == null;
+    }
+
+    /**
+     * Heap bytes currently charged against the global budget.
+     */
+    public long residentBytes() {
+        return accounting.charged.get();
+    }
+
+    /**
+     * Moves the content buffer to a memory-mapped temp file, leaving only the
+     * index on the heap. Called by {@link HistoryBudget} under its own lock.
+     */
+    synchronized void spill() throws IOException {
+        if (data == null) {
+            return;
+        }
+        long before = footprint();
+        Path file = Files.createTempFile(HistoryBudget.spillDirectory(), "session", ".log");
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.put(ByteBuffer.wrap(data, 0, length));
+            mapped = buffer;
+        }
+        accounting.spillFile = file;
+        data = null;
+        charge(footprint() - before);
+    }
+
+    private void pageIn() {
+        if (data != null) {
+            return;
+        }
+        byte[] restored = new byte[Math.max(INITIAL_CAPACITY, length + length / 2)];
+        mapped.get(0, restored, 0, length);
+        data = restored;
+        mapped = null;
+        accounting.deleteSpillFile();
+    }
+
+    private long footprint() {
+        long index = (long) ends.length * INDEX_SLOT_BYTES;
+        return data == null ? index : index + data.length;
+    }
+
+    private void charge(long delta) {
+        accounting.charged.addAndGet(delta);
+        HistoryBudget.charge(delta);
+    }
+
+    private void touch() {
+        lastAccess = HistoryBudget.tick();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("message " + index + " of " + count);
+        }
+    }
+
+    /*
+     * State shared with the Cleaner so that dropped sessions give their bytes
+     * back to the budget and remove their spill file.
+     */
+    private static final class Accounting implements Runnable {
+        final AtomicLong charged = new AtomicLong();
+        volatile Path spillFile;
+
+        void deleteSpillFile() {
+            Path file = spillFile;
+            spillFile = null;
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            HistoryBudget.charge(-charged.getAndSet(0));
+            deleteSpillFile();
+        }
+    }
+}
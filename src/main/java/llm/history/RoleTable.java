@@ -0,0 +1,48 @@
+package llm.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global intern table mapping role names to one-byte ids.
+ */
+final class RoleTable {
+    private static final int MAX_ROLES = 256;
+    private static final Map<String, Byte> ids = new ConcurrentHashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    static {
+        // common roles get stable ids
+        intern("system");
+        intern("user");
+        intern("assistant");
+        intern("turtle");
+    }
+
+    private RoleTable() {
+    }
+
+    static byte intern(String role) {
+        Byte id = ids.get(role);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            return ids.computeIfAbsent(role, r -> {
+                if (names.size() >= MAX_ROLES) {
+                    throw new IllegalStateException("Too many distinct roles (max " + MAX_ROLES + ")");
+                }
+                names.add(r);
+                return (byte) (names.size() - 1);
+            });
+        }
+    }
+
+    static String name(byte id) {
+        synchronized (names) {
+            return names.get(id & 0xFF);
+        }
+    }
+}
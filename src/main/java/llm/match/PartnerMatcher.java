@@ -0,0 +1,217 @@
+package llm.match;
+
+import org.nlogo.api.Agent;
+import org.nlogo.api.AgentSet;
+import org.nlogo.api.Turtle;
+import org.nlogo.api.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pairs up turtles that are close enough to start a conversation, the
+ * per-tick scheduling step of conversation models. Turtles are bucketed in
+ * a grid of cells at least radius wide, so each turtle only looks at its
+ * own and the eight neighboring cells instead of every other turtle.
+ * Pairs that talked recently are kept in a cooldown table here, so the
+ * model needs no list of recent conversations.
+ */
+public final class PartnerMatcher {
+    // pair key -> tick from which the pair may talk again
+    private final Map<Long, Double> cooldowns = new HashMap<>();
+
+    public void clear() {
+        cooldowns.clear();
+    }
+
+    /**
+     * Matches every turtle, in agentset order, with its nearest unmatched
+     * partner within radius that is not cooling down. A turtle is in at
+     * most one pair. Matched pairs cool down for cooldownTicks.
+     */
+    public List<Turtle[]> match(World world, AgentSet agents, double radius, double cooldownTicks) {
+        double now = world.ticks();
+        cooldowns.values().removeIf(until -> until <= now);
+
+        List<Turtle> turtles = new ArrayList<>(agents.count());
+        for (Agent agent : agents.agents()) {
+            if (agent instanceof Turtle) {
+                turtles.add((Turtle) agent);
+            }
+        }
+        int n = turtles.size();
+        List<Turtle[]> pairs = new ArrayList<>();
+        if (n < 2 || radius <= 0) {
+            return pairs;
+        }
+
+        Grid grid = new Grid(world, turtles, radius);
+        boolean[] matched = new boolean[n];
+        int[] cells = new int[9];
+        for (int i = 0; i < n; i++) {
+            if (matched[i]) {
+                continue;
+            }
+            int best = -1;
+            double bestDistance = radius;
+            int count = grid.neighborCells(i, cells);
+            for (int c = 0; c < count; c++) {
+                for (int k = grid.cellStart[cells[c]]; k < grid.cellStart[cells[c] + 1]; k++) {
+                    int j = grid.order[k];
+                    if (j == i || matched[j]) {
+                        continue;
+                    }
+                    double distance = grid.distance(i, j);
+                    if (distance <= bestDistance && !coolingDown(turtles.get(i), turtles.get(j))) {
+                        best = j;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            if (best >= 0) {
+                matched[i] = true;
+                matched[best] = true;
+                pairs.add(new Turtle[] { turtles.get(i), turtles.get(best) });
+                cooldowns.put(key(turtles.get(i), turtles.get(best)), now + cooldownTicks);
+            }
+        }
+        return pairs;
+    }
+
+    private boolean coolingDown(Turtle a, Turtle b) {
+        return cooldowns.containsKey(key(a, b));
+    }
+
+    private static long key(Turtle a, Turtle b) {
+        long x = Math.min(a.id(), b.id());
+        long y = Math.max(a.id(), b.id());
+        return (x << 32) ^ y;
+    }
+
+    /*
+     * Turtle indices sorted by cell (counting sort). On wrapping axes the
+     * cells divide the world evenly so neighbors across the edge are
+     * adjacent cells. Cells are widened beyond radius when that keeps the
+     * grid near the turtle count, so a tiny radius in a big world does not
+     * allocate a huge, mostly empty table.
+     */
+    private static final class Grid {
+        private static final int MIN_CELLS = 64;
+
+        final double[] xs;
+        final double[] ys;
+        final int[] cellOf;
+        final int[] cellStart;
+        final int[] order;
+        final int columns;
+        final int rows;
+        final boolean wrapX;
+        final boolean wrapY;
+        final double width;
+        final double height;
+
+        Grid(World world, List<Turtle> turtles, double radius) {
+            int n = turtles.size();
+            wrapX = world.wrappingAllowedInX();
+            wrapY = world.wrappingAllowedInY();
+            width = world.worldWidth();
+            height = world.worldHeight();
+            long maxCells = Math.max(MIN_CELLS, 2L * n);
+            double size = radius;
+            int across = cellCount(width, size, wrapX);
+            int down = cellCount(height, size, wrapY);
+            while ((long) across * down > maxCells) {
+                size *= Math.max(1.1, Math.sqrt((double) across * down / maxCells));
+                across = cellCount(width, size, wrapX);
+                down = cellCount(height, size, wrapY);
+            }
+            columns = across;
+            rows = down;
+            double cellWidth = wrapX ? width / columns : size;
+            double cellHeight = wrapY ? height / rows : size;
+            double minX = world.minPxcor() - 0.5;
+            double minY = world.minPycor() - 0.5;
+
+            xs = new double[n];
+            ys = new double[n];
+            cellOf = new int[n];
+            cellStart = new int[columns * rows + 1];
+            for (int i = 0; i < n; i++) {
+                xs[i] = turtles.get(i).xcor();
+                ys[i] = turtles.get(i).ycor();
+                int column = clamp((int) Math.floor((xs[i] - minX) / cellWidth), columns);
+                int row = clamp((int) Math.floor((ys[i] - minY) / cellHeight), rows);
+                cellOf[i] = row * columns + column;
+                cellStart[cellOf[i] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                cellStart[c + 1] += cellStart[c];
+            }
+            order = new int[n];
+            int[] next = cellStart.clone();
+            for (int i = 0; i < n; i++) {
+                order[next[cellOf[i]]++] = i;
+            }
+        }
+
+        // saturates at Integer.MAX_VALUE for tiny sizes
+        private static int cellCount(double extent, double size, boolean wrap) {
+            int count = wrap ? (int) Math.floor(extent / size) : (int) Math.ceil(extent / size);
+            return Math.max(1, count);
+        }
+
+        private static int clamp(int index, int count) {
+            return Math.max(0, Math.min(count - 1, index));
+        }
+
+        // distinct cells around turtle i, at most nine
+        int neighborCells(int i, int[] cells) {
+            int column = cellOf[i] % columns;
+            int row = cellOf[i] / columns;
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                int r = axis(row + dy, rows, wrapY);
+                if (r < 0) {
+                    continue;
+                }
+                for (int dx = -1; dx <= 1; dx++) {
+                    int c = axis(column + dx, columns, wrapX);
+                    if (c < 0) {
+                        continue;
+                    }
+                    int cell = r * columns + c;
+                    boolean seen = false;
+                    for (int k = 0; k < count && !seen; k++) {
+                        seen = cells[k] == cell;
+                    }
+                    if (!seen) {
+                        cells[count++] = cell;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static int axis(int index, int count, boolean wrap) {
+            if (wrap) {
+                return Math.floorMod(index, count);
+            }
+            return index >= 0 && index < count ? index : -1;
+        }
+
+        // same as NetLogo's distance, wrapping where the topology does
+        double distance(int i, int j) {
+            double dx = Math.abs(xs[i] - xs[j]);
+            double dy = Math.abs(ys[i] - ys[j]);
+            if (wrapX) {
+                dx = Math.min(dx, width - dx);
+            }
+            if (wrapY) {
+                dy = Math.min(dy, height - dy);
+            }
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package llm.primitives;
+
+import backend.Backends;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:backend-healthy?
+ * Reports true if the current backend answers a status request within
+ * two seconds, e.g. to check the server in setup.
+ */
+public class BackendHealthyQ implements Reporter {
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        return Backends.get().isHealthy();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(Syntax.BooleanType());
+    }
+}
@@ -1,17 +1,30 @@
 package llm.primitives;
 
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
 import org.nlogo.api.*;
 import org.nlogo.api.Reporter;
 import org.nlogo.core.*;
 
+/**
+ * llm:conversation-complete? handle
+ * True once the reply has finished. Handles the workspace no longer holds
+ * (dropped by llm:retire-handle or clear-all) report
+ * true as well: no more text will arrive for them.
+ */
 public class ConversationCompleteQ implements Reporter {
+    private final WorkspaceState state;
+
+    public ConversationCompleteQ(WorkspaceState state) {
+        this.state = state;
+    }
 
     @Override
     public Object report(Argument[] args, Context context) throws ExtensionException {
         try {
             String handle = args[0].getString(); // chat ID
-            Boolean done = LLMAskAsync.completionFlags.get(handle);
-            return (done != null && done);
+            ReplyBuffer buffer = state.handle(handle);
+            return buffer == null || buffer.isComplete();
         } catch (Exception e) {
             throw new ExtensionException("ConversationCompleteQ error: " + e.getMessage());
         }
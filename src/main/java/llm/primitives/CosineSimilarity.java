@@ -0,0 +1,49 @@
+package llm.primitives;
+
+import llm.embed.Embedding;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:cosine-similarity a b
+ * Cosine similarity of two llm vectors (or plain lists of numbers).
+ */
+public class CosineSimilarity implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        Embedding a = toEmbedding(args[0].get());
+        Embedding b = toEmbedding(args[1].get());
+        if (a.dimensions() != b.dimensions()) {
+            throw new ExtensionException(
+                    "Vector sizes differ: " + a.dimensions() + " vs " + b.dimensions());
+        }
+        return a.cosine(b);
+    }
+
+    static Embedding toEmbedding(Object value) throws ExtensionException {
+        if (value instanceof Embedding) {
+            return (Embedding) value;
+        }
+        if (value instanceof LogoList) {
+            LogoList list = (LogoList) value;
+            float[] values = new float[list.size()];
+            for (int i = 0; i < values.length; i++) {
+                Object item = list.get(i);
+                if (!(item instanceof Double)) {
+                    throw new ExtensionException("Expected a list of numbers, got " + item);
+                }
+                values[i] = ((Double) item).floatValue();
+            }
+            return new Embedding(values);
+        }
+        throw new ExtensionException("Expected an llm vector or a list of numbers");
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.WildcardType() },
+                Syntax.NumberType());
+    }
+}
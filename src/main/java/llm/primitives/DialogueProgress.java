@@ -0,0 +1,41 @@
+package llm.primitives;
+
+import llm.async.Dialogue;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:dialogue-progress handle
+ * Reports how many turns of a llm:start-dialogue are finished. The
+ * dialogue is kept until llm:retire-handle or clear-all.
+ */
+public class DialogueProgress implements Reporter {
+    private final WorkspaceState state;
+
+    public DialogueProgress(WorkspaceState state) {
+        this.state = state;
+    }
+
+    static Dialogue dialogueOf(WorkspaceState state, String handle) throws ExtensionException {
+        Dialogue dialogue = state.dialogue(handle);
+        if (dialogue == null) {
+            throw new ExtensionException("No dialogue " + handle);
+        }
+        return dialogue;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        return (double) dialogueOf(state, args[0].getString()).getFinished();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[]{Syntax.StringType()},
+                Syntax.NumberType()
+        );
+    }
+}
@@ -0,0 +1,40 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * llm:dialogue-transcript handle
+ * Reports the finished turns of a llm:start-dialogue as [speaker reply]
+ * pairs, speaker being "a" or "b". Readable until the handle is retired
+ * with llm:retire-handle or clear-all.
+ */
+public class DialogueTranscript implements Reporter {
+    private final WorkspaceState state;
+
+    public DialogueTranscript(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        List<Object> turns = new ArrayList<>();
+        for (List<String> turn : DialogueProgress.dialogueOf(state, args[0].getString()).getTranscript()) {
+            turns.add(LogoList.fromJava(turn));
+        }
+        return LogoList.fromJava(turns);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[]{Syntax.StringType()},
+                Syntax.ListType()
+        );
+    }
+}
@@ -0,0 +1,33 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:dispatch-callbacks
+ * Runs the callbacks queued by llm:ask-then and llm:ask-streaming since the
+ * last call, typically once per tick in go.
+ */
+public class DispatchCallbacks implements Command {
+    private final WorkspaceState state;
+
+    public DispatchCallbacks(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            state.callbacks().dispatch(context);
+        } catch (LogoException ex) {
+            throw new ExtensionException("Error in llm callback: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax();
+    }
+}
@@ -1,25 +1,27 @@
 package llm.primitives;
 
 import llm.ChatSession;
-import ollama.TokenData;
+import llm.async.LoadShedder;
+import llm.async.ReplyBuffer;
+import llm.async.ReplyListener;
+import llm.async.WorkspaceState;
+import metrics.AsyncTaskEvent;
+import metrics.Stats;
 import org.nlogo.api.*;
 import org.nlogo.core.SyntaxJ;
 import org.nlogo.core.Syntax;
 
-import java.util.concurrent.*;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletionException;
 
-import utils.StringUtils;
+import utils.TextPipeline;
 
 public class LLMAskAsync implements Reporter {
-    private static final ExecutorService executor = Executors.newCachedThreadPool(); // thread pool
+    private final WorkspaceState state;
 
-    protected static final ConcurrentHashMap<String, BlockingQueue<String>> buffers = new ConcurrentHashMap<>(); // buffered
-                                                                                                                 // tokens
-    protected static final ConcurrentHashMap<String, Boolean> completionFlags = new ConcurrentHashMap<>(); // chat
-                                                                                                           // completion
-                                                                                                           // tracker
+    public LLMAskAsync(WorkspaceState state) {
+        this.state = state;
+    }
 
     @Override
     public Object report(Argument[] args, Context context) throws ExtensionException {
@@ -28,46 +30,88 @@ public class LLMAskAsync implements Reporter {
             String prompt = args[1].getString();
             String handle = UUID.randomUUID().toString(); // Chat ID
 
-            BlockingQueue<String> queue = new LinkedBlockingQueue<>();
-            buffers.put(handle, queue);
-            completionFlags.put(handle, false);
+            ReplyBuffer buffer = new ReplyBuffer();
+            state.register(handle, buffer);
+            if (!LoadShedder.shed(state, session, buffer)) {
+                submit(state, session, prompt, handle, buffer);
+            }
 
-            // Use the correct role for the message
-            Map<String, String> message = new HashMap<>();
-            message.put("role", session.getRole());
-            message.put("content", prompt);
+            return handle;
+        } catch (Exception ex) {
+            throw new ExtensionException("LLMAskAsync error: " + ex.getMessage());
+        }
+    }
 
-            executor.submit(() -> {
-                try {
-                    // ask to llama
-                    Stream<TokenData> responseTokens = session.ask(message);
+    /*
+     * Starts one turn from the workspace's scheduler lane and reports the
+     * processed reply to the listener as tokens arrive. The lane's worker
+     * only sends the request; tokens are handled on the HTTP client's
+     * threads, so no worker waits on the server, but the turn keeps its
+     * scheduler slot until it ends. Tokens are only requested while the
+     * listener has room. handle only tags the trace
+     */
+    static void submit(WorkspaceState state, ChatSession session, String prompt, String handle,
+            ReplyListener listener) {
+        // Use the correct role for the message
+        Map<String, String> message = new HashMap<>();
+        message.put("role", session.getRole());
+        message.put("content", prompt);
 
-                    // collect the response
-                    StringBuilder builder = new StringBuilder();
-                    responseTokens.forEach(tokenData -> builder.append(tokenData.getToken()));
-                    String rawReply = builder.toString();
+        long submitted = System.nanoTime();
+        state.submitAsync(() -> {
+            AsyncTaskEvent event = new AsyncTaskEvent();
+            event.begin();
+            long started = System.nanoTime();
+            event.queueWait = started - submitted;
+            event.handle = handle;
+            event.role = session.getRole();
+            Stats.time("async.queue-wait", event.queueWait);
 
-                    // unescape and wrap
-                    String unescaped = StringUtils.unescape(rawReply);
-                    String wrapped = StringUtils.wrapText(unescaped, 60);
+            // unescape and wrap each token as it arrives
+            TextPipeline pipeline = TextPipeline.forReplies(state.textOptions());
+            StringBuilder reply = new StringBuilder();
 
-                    // stream char by char
-                    for (int i = 0; i < wrapped.length(); i++) {
-                        queue.offer(String.valueOf(wrapped.charAt(i)));
+            // ask to llama
+            return session.askAsync(message, null, tokenData -> {
+                long before = System.nanoTime();
+                String text = pipeline.push(tokenData.getToken());
+                event.postProcess += System.nanoTime() - before;
+                event.tokens++;
+                if (!text.isEmpty()) {
+                    reply.append(text);
+                    listener.onChunk(text);
+                }
+            }, listener).whenComplete((raw, error) -> {
+                try {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause()
+                                : error;
+                        listener.onError(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                        return;
                     }
+                    String rest = pipeline.finish();
+                    if (!rest.isEmpty()) {
+                        reply.append(rest);
+                        listener.onChunk(rest);
+                    }
+
+                    // conversation complete
+                    listener.onComplete(reply.toString(), raw);
+                    event.succeeded = true;
                 } catch (Exception e) {
-                    // put an error marker if an error occurs
-                    queue.offer("[[ERROR: " + e.getMessage() + "]]");
+                    listener.onError(e);
                 } finally {
-                    // conversation complete
-                    completionFlags.put(handle, true);
+                    event.end();
+                    event.commit();
+                    long total = System.nanoTime() - started;
+                    Stats.time("async.post-process", event.postProcess);
+                    Stats.time("async.total", total);
+                    state.transcript().async(session.getId(), session.getRole(), handle, event.tokens, total,
+                            event.queueWait, event.succeeded);
                 }
             });
-
-            return handle;
-        } catch (Exception ex) {
-            throw new ExtensionException("LLMAskAsync error: " + ex.getMessage());
-        }
+        });
     }
 
     @Override
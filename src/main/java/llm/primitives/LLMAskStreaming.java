@@ -0,0 +1,40 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:ask-streaming session prompt [ chunk -> ... ] [ reply -> ... ]
+ * Like llm:ask-then, with an extra callback for text as it arrives. Chunks
+ * received between two llm:dispatch-callbacks are passed as one string.
+ */
+public class LLMAskStreaming implements Command {
+    private final WorkspaceState state;
+
+    public LLMAskStreaming(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("Expected a chat session");
+        }
+        ChatSession session = (ChatSession) arg;
+        String prompt = args[1].getString();
+        AnonymousCommand onChunk = args[2].getCommand();
+        AnonymousCommand onReply = args[3].getCommand();
+
+        LLMAskAsync.submit(state, session, prompt, null, state.callbacks().listener(onChunk, onReply));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] {
+                Syntax.WildcardType(), Syntax.StringType(), Syntax.CommandType(), Syntax.CommandType() });
+    }
+}
@@ -0,0 +1,70 @@
+package llm.primitives;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import llm.ChatSession;
+import ollama.TokenData;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import utils.JsonUtils;
+
+/**
+ * llm:ask-structured session prompt schema
+ * Asks with Ollama's constrained "format" and reports the decoded reply:
+ * JSON arrays become lists, objects become [key value] pair lists.
+ * schema is a JSON schema string, or "json" for any valid JSON.
+ */
+public class LLMAskStructured implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        try {
+            ChatSession session = (ChatSession) args[0].get();
+            String prompt = args[1].getString();
+            JsonElement format = JsonUtils.parseFormat(args[2].getString());
+
+            return askStructured(session, prompt, format);
+        } catch (ExtensionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: ", e);
+        }
+    }
+
+    static Object askStructured(ChatSession session, String prompt, JsonElement format)
+            throws ExtensionException {
+        // Use the correct role for the message
+        Map<String, String> message = new HashMap<>();
+        message.put("role", session.getRole());
+        message.put("content", prompt);
+
+        Stream<TokenData> responseTokens = session.ask(message, format);
+
+        // collect raw answer, no unescaping: Gson handles JSON escapes
+        StringBuilder builder = new StringBuilder();
+        responseTokens.forEach(tokenData -> builder.append(tokenData.getToken()));
+
+        // a failed or empty generation would parse as JSON null and come back as nobody
+        if (builder.toString().trim().isEmpty()) {
+            throw new ExtensionException("model returned no JSON");
+        }
+        try {
+            return JsonUtils.toLogo(JsonParser.parseString(builder.toString()));
+        } catch (JsonParseException e) {
+            throw new ExtensionException("Reply is not valid JSON: " + builder, e);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        int[] input = new int[] { Syntax.WildcardType(), Syntax.StringType(), Syntax.StringType() };
+        int output = Syntax.WildcardType();
+        return SyntaxJ.reporterSyntax(input, output);
+    }
+}
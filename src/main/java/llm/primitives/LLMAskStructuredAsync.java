@@ -0,0 +1,65 @@
+package llm.primitives;
+
+import com.google.gson.JsonElement;
+import llm.ChatSession;
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.SyntaxJ;
+import org.nlogo.core.Syntax;
+
+import java.util.UUID;
+
+import utils.JsonUtils;
+
+/**
+ * llm:ask-structured-async session prompt schema
+ * Runs llm:ask-structured in the background and reports a handle. Once
+ * llm:conversation-complete? is true, llm:structured-result reports the
+ * decoded reply, or raises the error llm:ask-structured would have, such
+ * as an empty reply.
+ */
+public class LLMAskStructuredAsync implements Reporter {
+    private final WorkspaceState state;
+
+    public LLMAskStructuredAsync(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        try {
+            ChatSession session = (ChatSession) args[0].get();
+            String prompt = args[1].getString();
+            JsonElement format = JsonUtils.parseFormat(args[2].getString());
+            String handle = UUID.randomUUID().toString(); // Chat ID
+
+            // the buffer stays empty, it only carries completion and the result
+            ReplyBuffer buffer = new ReplyBuffer();
+            state.register(handle, buffer);
+
+            state.submit(() -> {
+                Object result;
+                try {
+                    result = LLMAskStructured.askStructured(session, prompt, format);
+                } catch (Exception e) {
+                    result = e;
+                }
+                // conversation complete
+                buffer.complete(result);
+            });
+
+            return handle;
+        } catch (Exception ex) {
+            throw new ExtensionException("LLMAskStructuredAsync error: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        // Inputs: (ChatSession, String prompt, String schema) -> Output: String handle
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.StringType(), Syntax.StringType() },
+                Syntax.StringType());
+    }
+}
@@ -1,6 +1,7 @@
 package llm.primitives;
 
 import llm.ChatSession;
+import llm.async.WorkspaceState;
 import ollama.TokenData;
 import org.nlogo.api.*;
 import org.nlogo.api.Reporter;
@@ -10,9 +11,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Stream;
 
-import utils.StringUtils;
+import utils.TextPipeline;
 
 public class LLMAskSync implements Reporter {
+    private final WorkspaceState state;
+
+    public LLMAskSync(WorkspaceState state) {
+        this.state = state;
+    }
+
     @Override
     public Object report(Argument[] args, Context context) throws ExtensionException {
         try {
@@ -32,10 +39,8 @@ public class LLMAskSync implements Reporter {
             String rawReply = builder.toString();
 
             // unescape and wrap
-            String unescaped = StringUtils.unescape(rawReply);
-            String wrapped = StringUtils.wrapText(unescaped, 60);
-
-            return wrapped;
+            TextPipeline pipeline = TextPipeline.forReplies(state.textOptions());
+            return pipeline.push(rawReply) + pipeline.finish();
         } catch (Exception e) {
             throw new ExtensionException(this.getClass().getSimpleName() + " error: ", e);
         }
@@ -0,0 +1,40 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:ask-then session prompt [ reply -> ... ]
+ * Asks in the background and queues the callback for when the reply is
+ * finished. Queued callbacks run on the next llm:dispatch-callbacks, as the
+ * agent calling it, so use "ask turtle ..." inside to address a turtle.
+ */
+public class LLMAskThen implements Command {
+    private final WorkspaceState state;
+
+    public LLMAskThen(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("Expected a chat session");
+        }
+        ChatSession session = (ChatSession) arg;
+        String prompt = args[1].getString();
+        AnonymousCommand onReply = args[2].getCommand();
+
+        LLMAskAsync.submit(state, session, prompt, null, state.callbacks().listener(null, onReply));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.StringType(), Syntax.CommandType() });
+    }
+}
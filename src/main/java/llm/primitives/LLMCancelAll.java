@@ -0,0 +1,25 @@
+package llm.primitives;
+
+import backend.Backends;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:cancel-all
+ * Aborts every reply still streaming from the current backend. Async
+ * handles complete with whatever text had arrived, and the sessions'
+ * next turns can start.
+ */
+public class LLMCancelAll implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Backends.get().cancelAll();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax();
+    }
+}
@@ -0,0 +1,31 @@
+package llm.primitives;
+
+import llm.cascade.ModelCascade;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * llm:cascade-stats
+ * Reports one row per cascade model as [model attempts accepted hit-rate
+ * mean-ms]: how often its replies passed validation and how long they took.
+ * Cleared by llm:reset-stats.
+ */
+public class LLMCascadeStats implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        List<Object> rows = new ArrayList<>();
+        for (List<Object> row : ModelCascade.report()) {
+            rows.add(LogoList.fromJava(row));
+        }
+        return LogoList.fromJava(rows);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(Syntax.ListType());
+    }
+}
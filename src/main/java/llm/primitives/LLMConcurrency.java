@@ -0,0 +1,32 @@
+package llm.primitives;
+
+import backend.AdaptiveLimiter;
+import backend.Backends;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.Arrays;
+
+/**
+ * llm:concurrency
+ * Reports [limit in-flight waiting]: how many generations the adaptive
+ * limiter currently allows at once, how many are running and how many
+ * wait for a slot.
+ */
+public class LLMConcurrency implements Reporter {
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        AdaptiveLimiter limiter = Backends.getLimiter();
+        return LogoList.fromJava(Arrays.asList(
+                (double) limiter.getLimit(),
+                (double) limiter.getInFlight(),
+                (double) limiter.getWaiting()));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(Syntax.ListType());
+    }
+}
@@ -1,24 +1,34 @@
 package llm.primitives;
 
 import llm.ChatSession;
+import llm.async.WorkspaceState;
 import org.nlogo.api.*;
 import org.nlogo.core.Syntax;
 import org.nlogo.core.SyntaxJ;
 
 public class LLMCreateSession implements Reporter {
+    private final WorkspaceState state;
+
+    public LLMCreateSession(WorkspaceState state) {
+        this.state = state;
+    }
+
     @Override
     public Object report(Argument[] args, Context context) throws ExtensionException {
+        ChatSession session;
         // If two string arguments: role and systemPrompt
         if (args.length > 1 && args[0].get() instanceof String && args[1].get() instanceof String) {
             String role = args[0].getString();
             String systemPrompt = args[1].getString();
-            return new ChatSession(role, systemPrompt);
+            session = new ChatSession(role, systemPrompt);
         } else if (args.length > 0 && args[0].get() instanceof String) {
             String role = args[0].getString();
-            return new ChatSession(role);
+            session = new ChatSession(role);
         } else {
-            return new ChatSession(); // default to 'turtle'
+            session = new ChatSession(); // default to 'turtle'
         }
+        session.setTranscript(state.transcript());
+        return session;
     }
 
     @Override
@@ -0,0 +1,27 @@
+package llm.primitives;
+
+import llm.embed.EmbeddingCache;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:embed text
+ * Reports the embedding of text as an llm vector, served from the cache
+ * when the same text was embedded before.
+ */
+public class LLMEmbed implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        try {
+            return EmbeddingCache.embed(args[0].getString());
+        } catch (Exception e) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: ", e);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(new int[] { Syntax.StringType() }, Syntax.WildcardType());
+    }
+}
@@ -0,0 +1,39 @@
+package llm.primitives;
+
+import llm.embed.EmbeddingCache;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * llm:embed-batch texts
+ * Reports one llm vector per string in texts. Cache misses are sent to
+ * Ollama together in a single request.
+ */
+public class LLMEmbedBatch implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        LogoList list = args[0].getList();
+        List<String> texts = new ArrayList<>(list.size());
+        for (Object item : list.javaIterable()) {
+            if (!(item instanceof String)) {
+                throw new ExtensionException("llm:embed-batch expects a list of strings, got " + item);
+            }
+            texts.add((String) item);
+        }
+
+        try {
+            return LogoList.fromJava(EmbeddingCache.embedAll(texts));
+        } catch (Exception e) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: ", e);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(new int[] { Syntax.ListType() }, Syntax.ListType());
+    }
+}
@@ -0,0 +1,53 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.SessionCodec;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Restores chat sessions written by llm:save-sessions.
+ * Usage: llm:load-sessions turtles "chat" "sessions.bin"
+ * Each turtle whose who number has a saved session gets it assigned to the
+ * given variable; the others are left untouched.
+ */
+public class LLMLoadSessions implements Command {
+    private final WorkspaceState state;
+
+    public LLMLoadSessions(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            AgentSet agents = args[0].getAgentSet();
+            String variable = args[1].getString();
+            File file = new File(context.attachCurrentDirectory(args[2].getString()));
+
+            Map<Long, ChatSession> sessions = SessionCodec.load(file);
+            for (Agent agent : agents.agents()) {
+                ChatSession session = sessions.get(agent.id());
+                if (session != null) {
+                    session.setTranscript(state.transcript());
+                    agent.setVariable(LLMSaveSessions.variableIndex(context.world(), agent, variable), session);
+                }
+            }
+        } catch (ExtensionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.TurtlesetType(), Syntax.StringType(), Syntax.StringType() });
+    }
+}
@@ -0,0 +1,46 @@
+package llm.primitives;
+
+import llm.match.PartnerMatcher;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * llm:match-partners agentset radius cooldown-ticks
+ * Reports [turtle-a turtle-b] pairs that may start a conversation this
+ * tick: each turtle is paired with its nearest unpaired turtle within
+ * radius, no turtle is in two pairs, and a pair cannot be matched again
+ * for cooldown-ticks. Pass only the turtles that are free, e.g.
+ * turtles with [ not chatting? ]. clear-all resets the cooldowns.
+ */
+public class LLMMatchPartners implements Reporter {
+    private final PartnerMatcher matcher;
+
+    public LLMMatchPartners(PartnerMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        AgentSet agents = args[0].getAgentSet();
+        double radius = args[1].getDoubleValue();
+        double cooldownTicks = args[2].getDoubleValue();
+
+        List<Object> pairs = new ArrayList<>();
+        for (Turtle[] pair : matcher.match(context.world(), agents, radius, cooldownTicks)) {
+            pairs.add(LogoList.fromJava(Arrays.asList(pair[0], pair[1])));
+        }
+        return LogoList.fromJava(pairs);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.AgentsetType(), Syntax.NumberType(), Syntax.NumberType() },
+                Syntax.ListType());
+    }
+}
@@ -7,12 +7,17 @@ import org.nlogo.core.*;
 import org.nlogo.window.GUIWorkspace;
 
 import javax.swing.*;
+import java.awt.GraphicsEnvironment;
 
 public class LLMOpenChat implements Command {
 
     @Override
     public void perform(final Argument[] args, final Context context)
             throws ExtensionException {
+        // headless runs (BehaviorSpace, netlogo-headless) have no window to open
+        if (!(context.workspace() instanceof GUIWorkspace) || GraphicsEnvironment.isHeadless()) {
+            throw new ExtensionException("llm:open-chat needs the NetLogo GUI");
+        }
         // must run on the AWT thread
         GUIWorkspace gw = (GUIWorkspace) context.workspace();
         SwingUtilities.invokeLater(() -> {
@@ -0,0 +1,26 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:poll handle mode
+ * Like llm:poll-conversation, but mode ("chars", "text", "words" or
+ * "lines") decides how new text is split, so models print a few strings
+ * per tick instead of one item per character.
+ */
+public class LLMPoll extends PollConversation {
+
+    public LLMPoll(WorkspaceState state) {
+        super(state);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.StringType(), Syntax.StringType() },
+                Syntax.ListType());
+    }
+}
@@ -0,0 +1,43 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.embed.MemoryStore;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:recall session query k
+ * Reports up to k remembered texts, most similar to query first.
+ */
+public class LLMRecall implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        try {
+            MemoryStore memory = memoryOf(args[0].get());
+            return LogoList.fromJava(memory.recall(args[1].getString(), args[2].getIntValue()));
+        } catch (ExtensionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: ", e);
+        }
+    }
+
+    static MemoryStore memoryOf(Object arg) throws ExtensionException {
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("Expected a chat session");
+        }
+        MemoryStore memory = ((ChatSession) arg).getMemory();
+        if (memory == null) {
+            throw new ExtensionException("This session has no memory, use llm:set-memory first");
+        }
+        return memory;
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.StringType(), Syntax.NumberType() },
+                Syntax.ListType());
+    }
+}
@@ -0,0 +1,31 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.embed.MemoryStore;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Adds a memory to a session's long-term memory.
+ * Usage: llm:remember chat "Turtle 4 likes lettuce"
+ */
+public class LLMRemember implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            MemoryStore memory = LLMRecall.memoryOf(args[0].get());
+            memory.remember(args[1].getString());
+        } catch (ExtensionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.WildcardType(), Syntax.StringType() });
+    }
+}
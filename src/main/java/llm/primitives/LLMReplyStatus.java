@@ -0,0 +1,33 @@
+package llm.primitives;
+
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Reports how an async reply ended.
+ * Usage: llm:reply-status handle
+ * "pending" while it streams, then "done", "error", "shed" (refused under
+ * overload, no text) or "fallback" (answered locally under overload);
+ * "unknown" for handles this workspace does not hold.
+ */
+public class LLMReplyStatus implements Reporter {
+    private final WorkspaceState state;
+
+    public LLMReplyStatus(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        ReplyBuffer buffer = state.handle(args[0].getString());
+        return buffer == null ? "unknown" : buffer.getStatus();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(new int[] { Syntax.StringType() }, Syntax.StringType());
+    }
+}
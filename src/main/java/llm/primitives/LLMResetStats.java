@@ -0,0 +1,25 @@
+package llm.primitives;
+
+import llm.cascade.ModelCascade;
+import metrics.Stats;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:reset-stats
+ * Clears the numbers reported by llm:stats and llm:cascade-stats.
+ */
+public class LLMResetStats implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Stats.reset();
+        ModelCascade.resetStats();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax();
+    }
+}
@@ -0,0 +1,31 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:retire-handle handle
+ * Forgets an async reply or dialogue once the model has read its text,
+ * status and transcript. A reply still streaming is abandoned. Polling
+ * frees a finished reply's text, but the handle itself stays until it is
+ * retired or clear-all runs.
+ */
+public class LLMRetireHandle implements Command {
+    private final WorkspaceState state;
+
+    public LLMRetireHandle(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        state.retire(args[0].getString());
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.StringType() });
+    }
+}
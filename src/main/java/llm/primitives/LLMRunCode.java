@@ -1,5 +1,7 @@
 package llm.primitives;
 
+import metrics.RunCodeEvent;
+import metrics.Stats;
 import org.nlogo.api.*;
 import org.nlogo.core.Syntax;
 import org.nlogo.core.SyntaxJ;
@@ -20,8 +22,12 @@ public class LLMRunCode implements Command {
 
     @Override
     public void perform(Argument[] args, Context context) throws ExtensionException {
+        RunCodeEvent event = new RunCodeEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             String code = args[0].getString();
+            event.codeLength = code == null ? 0 : code.length();
 
             // Validate that code is not empty or null
             if (code == null || code.trim().isEmpty()) {
@@ -31,6 +37,7 @@ public class LLMRunCode implements Command {
             // Execute the code string in the current workspace
             // Use command() method which is simpler and more reliable
             context.workspace().command(code);
+            event.succeeded = true;
 
         } catch (ExtensionException ex) {
             // Propagate NetLogo extension exceptions directly
@@ -41,6 +48,10 @@ public class LLMRunCode implements Command {
         } catch (Exception ex) {
             // Wrap any other unexpected exceptions
             throw new ExtensionException("Unexpected error running code: " + ex.getMessage(), ex);
+        } finally {
+            event.end();
+            event.commit();
+            Stats.time("run-code", System.nanoTime() - start);
         }
     }
 }
\ No newline at end of file
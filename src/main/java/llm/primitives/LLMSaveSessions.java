@@ -0,0 +1,62 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.SessionCodec;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the chat sessions held by a turtle variable to a binary file.
+ * Usage: llm:save-sessions turtles "chat" "sessions.bin"
+ * Sessions are keyed by who number so llm:load-sessions can put them back;
+ * a session shared by several turtles is written once and stays shared.
+ */
+public class LLMSaveSessions implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            AgentSet agents = args[0].getAgentSet();
+            String variable = args[1].getString();
+            File file = new File(context.attachCurrentDirectory(args[2].getString()));
+
+            Map<Long, ChatSession> sessions = new LinkedHashMap<>();
+            for (Agent agent : agents.agents()) {
+                Object value = agent.getVariable(variableIndex(context.world(), agent, variable));
+                if (value instanceof ChatSession) {
+                    sessions.put(agent.id(), (ChatSession) value);
+                }
+            }
+            SessionCodec.save(file, sessions);
+        } catch (ExtensionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: " + ex.getMessage(), ex);
+        }
+    }
+
+    // resolve a turtles-own or breed-own variable name to its slot
+    static int variableIndex(World world, Agent agent, String name) throws ExtensionException {
+        String upper = name.toUpperCase(Locale.ROOT);
+        int index = world.turtlesOwnIndexOf(upper);
+        if (index < 0 && agent instanceof Turtle) {
+            index = world.breedsOwnIndexOf(((Turtle) agent).getBreed(), upper);
+        }
+        if (index < 0) {
+            throw new ExtensionException("No turtle variable named " + name);
+        }
+        return index;
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.TurtlesetType(), Syntax.StringType(), Syntax.StringType() });
+    }
+}
@@ -0,0 +1,45 @@
+package llm.primitives;
+
+import llm.fallback.FallbackResponder;
+import org.nlogo.api.*;
+import org.nlogo.core.LogoList;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.io.File;
+
+/**
+ * Teaches the fallback responder replies for a session role.
+ * Usage: llm:seed-fallback "turtle" "transcripts"
+ *        llm:seed-fallback "turtle" ["Hello!" "Lovely grass today."]
+ * A path names a transcript file or a directory of them (see
+ * llm:start-transcript), of which the role's successful replies are
+ * learned; a list gives sample replies directly.
+ */
+public class LLMSeedFallback implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            String role = args[0].getString();
+            Object source = args[1].get();
+            if (source instanceof LogoList) {
+                for (Object item : ((LogoList) source).javaIterable()) {
+                    FallbackResponder.learn(role, String.valueOf(item));
+                }
+            } else {
+                File file = new File(context.attachCurrentDirectory(String.valueOf(source)));
+                FallbackResponder.seed(file, role);
+            }
+        } catch (ExtensionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.StringType(), Syntax.StringType() | Syntax.ListType() });
+    }
+}
@@ -0,0 +1,61 @@
+package llm.primitives;
+
+import backend.Backends;
+import backend.LLMBackend;
+import backend.OpenAICompatibleBackend;
+import llm.embed.EmbeddingCache;
+import ollama.OllamaClient;
+import ollama.OllamaConfig;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.util.Locale;
+
+/**
+ * Chooses the server all sessions talk to.
+ * Usage: llm:set-backend "openai" "http://localhost:8080/v1" "llama-3.2-3b" "nomic-embed-text"
+ *        llm:set-backend "ollama" "" "" ""
+ * "openai" covers any OpenAI-compatible server (llama.cpp, vLLM) and
+ * sends OPENAI_API_KEY if set; without an embedding model it cannot embed.
+ * For "ollama" an empty URL or embedding model means the local default,
+ * and the model is ignored. Cached embeddings are dropped and session
+ * memories re-embedded, since vectors of different models differ.
+ */
+public class LLMSetBackend implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        String kind = args[0].getString().trim().toLowerCase(Locale.ROOT);
+        String url = args[1].getString().trim();
+        String model = args[2].getString().trim();
+        String embedModel = args[3].getString().trim();
+
+        LLMBackend backend;
+        switch (kind) {
+            case "ollama":
+                backend = url.isEmpty() && embedModel.isEmpty()
+                        ? OllamaClient.getInstance()
+                        : new OllamaClient(url.isEmpty() ? OllamaConfig.BASE_URI : url,
+                                embedModel.isEmpty() ? OllamaConfig.EMBED_MODEL : embedModel);
+                break;
+            case "openai":
+                if (url.isEmpty() || model.isEmpty()) {
+                    throw new ExtensionException("An OpenAI-compatible backend needs a URL and a model");
+                }
+                backend = new OpenAICompatibleBackend(url, model, embedModel, System.getenv("OPENAI_API_KEY"));
+                break;
+            default:
+                throw new ExtensionException("Unknown backend \"" + kind + "\", expected ollama or openai");
+        }
+        Backends.set(backend);
+        EmbeddingCache.clear();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.StringType(), Syntax.StringType(), Syntax.StringType(),
+                        Syntax.StringType() });
+    }
+}
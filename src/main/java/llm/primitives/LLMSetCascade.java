@@ -0,0 +1,53 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.cascade.ModelCascade;
+import llm.cascade.ReplyValidator;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes a session's turns from a small model to larger ones.
+ * Usage: llm:set-cascade chat ["llama3.2:1b" "llama3.1:8b"] "code"
+ * A reply the validator rejects is asked again of the next model. The
+ * validator is "none", "json", "code" (compiles in this model) or
+ * "regex:<pattern>"; structured replies are also checked against their
+ * schema. An empty model list switches the cascade off.
+ */
+public class LLMSetCascade implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("llm:set-cascade expects a chat session");
+        }
+        List<String> models = new ArrayList<>();
+        for (Object item : args[1].getList().javaIterable()) {
+            if (!(item instanceof String) || ((String) item).isBlank()) {
+                throw new ExtensionException("Models must be non-empty strings");
+            }
+            models.add((String) item);
+        }
+        try {
+            ChatSession session = (ChatSession) arg;
+            if (models.isEmpty()) {
+                session.setCascade(null, null);
+            } else {
+                session.setCascade(new ModelCascade(models),
+                        ReplyValidator.parse(args[2].getString(), context.workspace()));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new ExtensionException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.WildcardType(), Syntax.ListType(), Syntax.StringType() });
+    }
+}
@@ -0,0 +1,29 @@
+package llm.primitives;
+
+import backend.Backends;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Bounds the adaptive limit on concurrent generations.
+ * Usage: llm:set-concurrency-bounds 1 16
+ * Equal bounds fix the limit, e.g. for a server with known slots.
+ */
+public class LLMSetConcurrencyBounds implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        int min = args[0].getIntValue();
+        int max = args[1].getIntValue();
+        if (min < 1 || max < min) {
+            throw new ExtensionException("Expected 1 <= min <= max");
+        }
+        Backends.getLimiter().setBounds(min, max);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.NumberType(), Syntax.NumberType() });
+    }
+}
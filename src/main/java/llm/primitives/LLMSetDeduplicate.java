@@ -0,0 +1,30 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Lets a session share identical in-flight requests.
+ * Usage: llm:set-deduplicate chat true
+ * While a byte-identical request (same model, prompt and format) is already
+ * streaming, this session attaches to it instead of asking Ollama again.
+ * Only use it when the model samples deterministically.
+ */
+public class LLMSetDeduplicate implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("llm:set-deduplicate expects a chat session");
+        }
+        ((ChatSession) arg).setDeduplicate(args[1].getBooleanValue());
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.WildcardType(), Syntax.BooleanType() });
+    }
+}
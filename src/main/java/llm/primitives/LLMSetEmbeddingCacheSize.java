@@ -0,0 +1,27 @@
+package llm.primitives;
+
+import llm.embed.EmbeddingCache;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Sets how many embeddings are kept in the cache (default 10000).
+ * Usage: llm:set-embedding-cache-size 50000
+ */
+public class LLMSetEmbeddingCacheSize implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        int entries = args[0].getIntValue();
+        if (entries < 0) {
+            throw new ExtensionException("Cache size cannot be negative");
+        }
+        EmbeddingCache.setCapacity(entries);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.NumberType() });
+    }
+}
@@ -0,0 +1,28 @@
+package llm.primitives;
+
+import llm.history.HistoryBudget;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Sets the global heap budget for chat histories, in megabytes.
+ * Usage: llm:set-history-budget 128
+ * Cold sessions beyond the budget are spilled to disk.
+ */
+public class LLMSetHistoryBudget implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        double megabytes = args[0].getDoubleValue();
+        if (megabytes < 0) {
+            throw new ExtensionException("History budget cannot be negative");
+        }
+        HistoryBudget.setLimit((long) (megabytes * 1024 * 1024));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.NumberType() });
+    }
+}
@@ -0,0 +1,28 @@
+package llm.primitives;
+
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+import utils.Log;
+
+/**
+ * Sets how much the extension prints to the console.
+ * Usage: llm:set-log-level "debug"
+ * Levels are "off", "error", "warn", "info" (the default) and "debug".
+ */
+public class LLMSetLogLevel implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            Log.setLevel(Log.parse(args[0].getString()));
+        } catch (IllegalArgumentException ex) {
+            throw new ExtensionException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.StringType() });
+    }
+}
@@ -0,0 +1,38 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.embed.MemoryStore;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Gives a session a bounded long-term memory.
+ * Usage: llm:set-memory chat 200 3
+ * Every finished turn is embedded and stored (up to 200 memories); the 3
+ * most relevant ones are prepended to each new prompt. A capacity of 0
+ * removes the memory.
+ */
+public class LLMSetMemory implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("llm:set-memory expects a chat session");
+        }
+        ChatSession session = (ChatSession) arg;
+        int capacity = args[1].getIntValue();
+        int topK = args[2].getIntValue();
+        if (capacity < 0 || topK < 0) {
+            throw new ExtensionException("Memory capacity and top-k cannot be negative");
+        }
+        session.setMemory(capacity == 0 ? null : new MemoryStore(capacity, topK));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.NumberType(), Syntax.NumberType() });
+    }
+}
@@ -0,0 +1,43 @@
+package llm.primitives;
+
+import llm.async.LoadShedder;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * Chooses what llm:ask-async does when the backend is overloaded.
+ * Usage: llm:set-overload-policy "fallback" 64 30
+ * Mode is "off", "fail" or "fallback"; a low-priority request is shed once
+ * the given number of requests wait for a slot, or its estimated wait
+ * exceeds the given seconds. Applies to this model only, until clear-all.
+ * See llm:reply-status and llm:set-priority.
+ */
+public class LLMSetOverloadPolicy implements Command {
+    private final WorkspaceState state;
+
+    public LLMSetOverloadPolicy(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            LoadShedder.Mode mode = LoadShedder.Mode.parse(args[0].getString());
+            int maxQueue = args[1].getIntValue();
+            double maxWait = args[2].getDoubleValue();
+            if (maxQueue < 0 || maxWait < 0) {
+                throw new ExtensionException("Expected a non-negative queue length and wait");
+            }
+            state.setOverloadPolicy(new LoadShedder.Policy(mode, maxQueue, maxWait));
+        } catch (IllegalArgumentException ex) {
+            throw new ExtensionException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.StringType(), Syntax.NumberType(), Syntax.NumberType() });
+    }
+}
@@ -0,0 +1,34 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.util.Locale;
+
+/**
+ * Sets whether a session's async requests may be shed under overload.
+ * Usage: llm:set-priority chat "high"
+ * Sessions start "low"; "high" requests always queue for the backend.
+ */
+public class LLMSetPriority implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("llm:set-priority expects a chat session");
+        }
+        String priority = args[1].getString().trim().toLowerCase(Locale.ROOT);
+        if (!priority.equals("high") && !priority.equals("low")) {
+            throw new ExtensionException("Unknown priority \"" + args[1].getString() + "\", expected high or low");
+        }
+        ((ChatSession) arg).setHighPriority(priority.equals("high"));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.WildcardType(), Syntax.StringType() });
+    }
+}
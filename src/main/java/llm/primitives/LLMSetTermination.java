@@ -0,0 +1,48 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import ollama.Termination;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ends a session's free-text replies early.
+ * Usage: llm:set-termination chat 2 80 ["\n\n"]
+ * Inputs are the sentences to keep (0 for no limit), the token cap (0 for
+ * none) and stop sequences. The sentence limit closes the stream as soon
+ * as the boundary arrives, so the server stops generating; cap and stop
+ * sequences are enforced by the server. Structured replies are not cut.
+ */
+public class LLMSetTermination implements Command {
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        Object arg = args[0].get();
+        if (!(arg instanceof ChatSession)) {
+            throw new ExtensionException("llm:set-termination expects a chat session");
+        }
+        int maxSentences = args[1].getIntValue();
+        int maxTokens = args[2].getIntValue();
+        if (maxSentences < 0 || maxTokens < 0) {
+            throw new ExtensionException("Expected non-negative sentence and token limits");
+        }
+        List<String> stop = new ArrayList<>();
+        for (Object item : args[3].getList().javaIterable()) {
+            if (!(item instanceof String) || ((String) item).isEmpty()) {
+                throw new ExtensionException("Stop sequences must be non-empty strings");
+            }
+            stop.add((String) item);
+        }
+        ((ChatSession) arg).setTermination(new Termination(stop, maxTokens, maxSentences, false));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] {
+                Syntax.WildcardType(), Syntax.NumberType(), Syntax.NumberType(), Syntax.ListType() });
+    }
+}
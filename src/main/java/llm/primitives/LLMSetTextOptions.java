@@ -0,0 +1,40 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import utils.TextPipeline;
+
+/**
+ * Configures how turtle replies are post-processed as they stream in.
+ * Usage: llm:set-text-options 60 2 true
+ * wraps at 60 columns (0 = no wrapping), keeps at most 2 sentences
+ * (0 = no limit) and strips quotes around the reply.
+ * Applies to this model only, until clear-all.
+ */
+public class LLMSetTextOptions implements Command {
+    private final WorkspaceState state;
+
+    public LLMSetTextOptions(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        int wrapWidth = args[0].getIntValue();
+        int maxSentences = args[1].getIntValue();
+        if (wrapWidth < 0 || maxSentences < 0) {
+            throw new ExtensionException("Wrap width and sentence limit cannot be negative");
+        }
+        boolean stripQuotes = args[2].getBooleanValue();
+        state.setTextOptions(new TextPipeline.ReplyOptions(wrapWidth, maxSentences, stripQuotes));
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(
+                new int[] { Syntax.NumberType(), Syntax.NumberType(), Syntax.BooleanType() });
+    }
+}
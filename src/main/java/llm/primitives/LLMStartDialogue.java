@@ -0,0 +1,58 @@
+package llm.primitives;
+
+import llm.ChatSession;
+import llm.async.Dialogue;
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.util.UUID;
+
+/**
+ * llm:start-dialogue sessionA sessionB opener turns
+ * Runs a whole exchange in the background: sessionA answers the opener,
+ * then the sessions answer each other until turns replies were given.
+ * Reports a handle for llm:poll, llm:poll-all and
+ * llm:conversation-complete? (text of all turns, one line break between
+ * turns), llm:dialogue-progress and llm:dialogue-transcript.
+ */
+public class LLMStartDialogue implements Reporter {
+    private final WorkspaceState state;
+
+    public LLMStartDialogue(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        Object a = args[0].get();
+        Object b = args[1].get();
+        if (!(a instanceof ChatSession) || !(b instanceof ChatSession)) {
+            throw new ExtensionException("Expected two chat sessions");
+        }
+        String opener = args[2].getString();
+        int turns = args[3].getIntValue();
+        if (turns < 0) {
+            throw new ExtensionException("Number of turns must not be negative");
+        }
+
+        String handle = UUID.randomUUID().toString(); // Chat ID
+        ReplyBuffer buffer = new ReplyBuffer();
+        Dialogue dialogue = new Dialogue((ChatSession) a, (ChatSession) b, turns, buffer,
+                (session, prompt, listener) -> LLMAskAsync.submit(state, session, prompt, handle, listener));
+        state.register(handle, buffer, dialogue);
+        dialogue.start(opener);
+
+        return handle;
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.WildcardType(), Syntax.WildcardType(), Syntax.StringType(),
+                        Syntax.NumberType() },
+                Syntax.StringType());
+    }
+}
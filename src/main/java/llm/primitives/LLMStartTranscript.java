@@ -0,0 +1,39 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+import java.io.File;
+
+/**
+ * Logs every turn of this model's sessions to NDJSON files in a directory.
+ * Usage: llm:start-transcript "transcripts" true
+ * The second input gzips the files. Files rotate every 64MB of text;
+ * writing happens on a background thread.
+ */
+public class LLMStartTranscript implements Command {
+    private final WorkspaceState state;
+
+    public LLMStartTranscript(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        try {
+            File directory = new File(context.attachCurrentDirectory(args[0].getString()));
+            state.transcript().start(directory, args[1].getBooleanValue());
+        } catch (ExtensionException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ExtensionException(this.getClass().getSimpleName() + " error: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax(new int[] { Syntax.StringType(), Syntax.BooleanType() });
+    }
+}
@@ -0,0 +1,31 @@
+package llm.primitives;
+
+import metrics.Stats;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * llm:stats
+ * Reports the request lifecycle numbers also emitted as JFR events:
+ * timers as [name count mean-ms max-ms] (e.g. "async.queue-wait",
+ * "generate.first-token", "poll"), then counters as [name total].
+ */
+public class LLMStats implements Reporter {
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        List<Object> rows = new ArrayList<>();
+        for (List<Object> row : Stats.snapshot()) {
+            rows.add(LogoList.fromJava(row));
+        }
+        return LogoList.fromJava(rows);
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(Syntax.ListType());
+    }
+}
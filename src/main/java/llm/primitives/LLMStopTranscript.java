@@ -0,0 +1,28 @@
+package llm.primitives;
+
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.core.Syntax;
+import org.nlogo.core.SyntaxJ;
+
+/**
+ * llm:stop-transcript
+ * Writes out what is still queued and closes the transcript file.
+ */
+public class LLMStopTranscript implements Command {
+    private final WorkspaceState state;
+
+    public LLMStopTranscript(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public void perform(Argument[] args, Context context) throws ExtensionException {
+        state.transcript().stop();
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.commandSyntax();
+    }
+}
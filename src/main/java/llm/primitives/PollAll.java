@@ -0,0 +1,70 @@
+package llm.primitives;
+
+import llm.async.PollMode;
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import metrics.PollEvent;
+import metrics.Stats;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * llm:poll-all handles mode
+ * Polls every handle in one call and reports a list of
+ * [handle chunks complete?] entries, in the order of handles.
+ */
+public class PollAll implements Reporter {
+    private final WorkspaceState state;
+
+    public PollAll(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        try {
+            LogoList handleList = args[0].getList();
+            PollMode mode = PollMode.parse(args[1].getString());
+
+            PollEvent event = new PollEvent();
+            event.begin();
+            long start = System.nanoTime();
+
+            List<Object> updates = new ArrayList<>(handleList.size());
+            for (Object item : handleList.javaIterable()) {
+                String handle = String.valueOf(item);
+                ReplyBuffer buffer = state.handle(handle);
+                // completion is read before polling so a complete entry is never missing text
+                // retired or cleared handles get no more text, so they count as complete
+                boolean complete = buffer == null || buffer.isComplete();
+                List<String> chunks = PollConversation.poll(state, handle, mode);
+                event.chunks += chunks.size();
+                if (event.handle == null) {
+                    event.handle = handle;
+                }
+                updates.add(LogoList.fromJava(
+                        Arrays.asList(handle, LogoList.fromJava(chunks), complete)));
+            }
+            event.end();
+            event.handles = handleList.size();
+            event.commit();
+            Stats.time("poll-all", System.nanoTime() - start);
+
+            return LogoList.fromJava(updates);
+        } catch (Exception e) {
+            throw new ExtensionException("PollAll error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[] { Syntax.ListType(), Syntax.StringType() },
+                Syntax.ListType());
+    }
+}
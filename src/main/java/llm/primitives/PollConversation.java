@@ -1,36 +1,57 @@
 package llm.primitives;
 
+import llm.async.PollMode;
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import metrics.PollEvent;
+import metrics.Stats;
 import org.nlogo.api.*;
 import org.nlogo.api.Reporter;
 import org.nlogo.core.*;
 import java.util.*;
-import java.util.concurrent.*;
 
 public class PollConversation implements Reporter {
+    private final WorkspaceState state;
+
+    public PollConversation(WorkspaceState state) {
+        this.state = state;
+    }
 
     @Override
     public Object report(Argument[] args, Context context) throws ExtensionException {
         try {
             String handle = args[0].getString(); // chat ID
+            // optional second argument (llm:poll) selects how text is split
+            PollMode mode = args.length > 1 ? PollMode.parse(args[1].getString()) : PollMode.CHARS;
 
-            // 2. Look in LLMAskAsync.buffers for this handle
-            BlockingQueue<String> queue = LLMAskAsync.buffers.get(handle);
-            if (queue == null) {
-                // no active conversation: return an empty LogoList
-                return LogoList.fromJava(Collections.emptyList());
-            }
-
-            // queue to list
-            List<String> tokens = new ArrayList<>();
-            queue.drainTo(tokens);
-            LogoList logoList = LogoList.fromJava(tokens);
+            PollEvent event = new PollEvent();
+            event.begin();
+            long start = System.nanoTime();
+            List<String> chunks = poll(state, handle, mode);
+            event.end();
+            event.handle = handle;
+            event.handles = 1;
+            event.chunks = chunks.size();
+            event.commit();
+            Stats.time("poll", System.nanoTime() - start);
 
-            return logoList;
+            return LogoList.fromJava(chunks);
         } catch (Exception e) {
             throw new ExtensionException("PollConversation error: " + e.getMessage());
         }
     }
 
+    static List<String> poll(WorkspaceState state, String handle, PollMode mode) {
+        // Look in this workspace's handles
+        ReplyBuffer buffer = state.handle(handle);
+        if (buffer == null) {
+            // no active conversation: nothing to report
+            return Collections.emptyList();
+        }
+        // the buffer frees its text once drained; status, result and dialogue stay until retired
+        return buffer.poll(mode);
+    }
+
     @Override
     public Syntax getSyntax() {
         // Input: one string (the handle), Output: a NetLogo list
@@ -0,0 +1,46 @@
+package llm.primitives;
+
+import llm.async.ReplyBuffer;
+import llm.async.WorkspaceState;
+import org.nlogo.api.*;
+import org.nlogo.api.Reporter;
+import org.nlogo.core.*;
+
+/**
+ * llm:structured-result handle
+ * Reports the decoded reply of a completed llm:ask-structured-async.
+ */
+public class StructuredResult implements Reporter {
+    private final WorkspaceState state;
+
+    public StructuredResult(WorkspaceState state) {
+        this.state = state;
+    }
+
+    @Override
+    public Object report(Argument[] args, Context context) throws ExtensionException {
+        String handle = args[0].getString(); // chat ID
+        ReplyBuffer buffer = state.handle(handle);
+        if (buffer == null || !buffer.isComplete()) {
+            throw new ExtensionException("Conversation " + handle + " is not complete");
+        }
+
+        Object result = buffer.getResult();
+        if (result == null) {
+            throw new ExtensionException("No structured result for " + handle);
+        }
+        if (result instanceof Exception) {
+            Exception error = (Exception) result;
+            throw new ExtensionException("StructuredResult error: " + error.getMessage(), error);
+        }
+        return result;
+    }
+
+    @Override
+    public Syntax getSyntax() {
+        return SyntaxJ.reporterSyntax(
+                new int[]{Syntax.StringType()},
+                Syntax.WildcardType()
+        );
+    }
+}
@@ -0,0 +1,226 @@
+package llm.transcript;
+
+import metrics.Stats;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Transcript of every turn of one workspace's sessions, as rotating NDJSON
+ * (optionally gzip) files. Each workspace owns its log, so parallel
+ * BehaviorSpace runs start and stop their transcripts independently, and
+ * every file name is unique, so runs sharing a directory never overwrite
+ * each other. Callers only claim a slot in a lock-free ring; a background
+ * writer drains it in batches. When the writer falls behind and the ring
+ * is full, records are dropped and counted ("transcript.dropped" in
+ * llm:stats) rather than slowing the tick.
+ */
+public final class TranscriptLog {
+    private static final int RING_SIZE = 64 * 1024; // power of two
+    private static final int BATCH = 1024;
+    private static final long IDLE_WAIT_NANOS = 5_000_000;
+    private static final long DEFAULT_ROTATE_BYTES = 64L * 1024 * 1024;
+    private static final Set<Output> running = ConcurrentHashMap.newKeySet(); // flushed at JVM exit
+
+    private volatile Output current; // null while logging is off
+
+    /**
+     * Starts logging into the directory, stopping this workspace's previous
+     * transcript. Files rotate after rotateBytes of uncompressed text.
+     */
+    public synchronized void start(File directory, boolean compress, long rotateBytes) throws IOException {
+        stop();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create transcript directory " + directory);
+        }
+        Output output = new Output(directory, compress, rotateBytes > 0 ? rotateBytes : DEFAULT_ROTATE_BYTES);
+        output.open();
+        running.add(output);
+        output.writer.start();
+        current = output;
+    }
+
+    public void start(File directory, boolean compress) throws IOException {
+        start(directory, compress, DEFAULT_ROTATE_BYTES);
+    }
+
+    /**
+     * Flushes what is queued and closes the file.
+     */
+    public synchronized void stop() {
+        Output output = current;
+        if (output != null) {
+            current = null;
+            output.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return current != null;
+    }
+
+    public void turn(long sessionId, String role, String prompt, String reply, int tokens,
+            long firstTokenNanos, long latencyNanos, boolean succeeded) {
+        Output output = current;
+        if (output != null) {
+            output.offer(new TranscriptRecord("turn", sessionId, role, null, prompt, reply,
+                    tokens, firstTokenNanos, latencyNanos, -1, succeeded));
+        }
+    }
+
+    public void async(long sessionId, String role, String handle, int tokens, long latencyNanos,
+            long queueNanos, boolean succeeded) {
+        Output output = current;
+        if (output != null) {
+            output.offer(new TranscriptRecord("async", sessionId, role, handle, null, null,
+                    tokens, -1, latencyNanos, queueNanos, succeeded));
+        }
+    }
+
+    /*
+     * One started transcript: the ring, its writer thread and the file
+     * being written
+     */
+    private static final class Output {
+        private final AtomicReferenceArray<TranscriptRecord> ring = new AtomicReferenceArray<>(RING_SIZE);
+        private final AtomicLong tail = new AtomicLong(); // next slot to claim, shared by producers
+        private volatile long head = 0; // next slot to read, written by the writer only
+        private volatile boolean stopping = false;
+
+        private final File directory;
+        private final boolean compress;
+        private final long rotateBytes;
+        private final String prefix;
+        private final Thread writer;
+
+        private Writer out;
+        private long written = 0; // uncompressed bytes in the current file
+        private int fileIndex = 0;
+
+        Output(File directory, boolean compress, long rotateBytes) {
+            this.directory = directory;
+            this.compress = compress;
+            this.rotateBytes = rotateBytes;
+            // the time orders the files, the random part keeps runs started in the same second apart
+            this.prefix = "transcript-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())
+                    + "-" + UUID.randomUUID().toString().substring(0, 8);
+            this.writer = new Thread(this::drainLoop, "llm-transcript");
+            writer.setDaemon(true);
+        }
+
+        // any thread: claim a slot, or drop when the writer is a full ring behind
+        private void offer(TranscriptRecord record) {
+            while (true) {
+                long t = tail.get();
+                if (t - head >= RING_SIZE) {
+                    Stats.count("transcript.dropped", 1);
+                    return;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    ring.lazySet((int) (t & (RING_SIZE - 1)), record);
+                    return;
+                }
+            }
+        }
+
+        private void drainLoop() {
+            StringBuilder batch = new StringBuilder(64 * 1024);
+            try {
+                while (true) {
+                    boolean last = stopping; // read before draining so nothing offered earlier is missed
+                    int count = drain(batch);
+                    if (count > 0) {
+                        write(batch);
+                        batch.setLength(0);
+                    } else if (last) {
+                        break;
+                    } else {
+                        out.flush();
+                        LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Transcript writer failed: " + e.getMessage());
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        /*
+         * Moves up to BATCH published records into the buffer; a claimed slot
+         * whose record is not yet visible ends the batch
+         */
+        private int drain(StringBuilder batch) {
+            long h = head;
+            int count = 0;
+            while (count < BATCH) {
+                int slot = (int) (h & (RING_SIZE - 1));
+                TranscriptRecord record = ring.get(slot);
+                if (record == null) {
+                    break;
+                }
+                ring.lazySet(slot, null);
+                record.appendJson(batch);
+                batch.append('\n');
+                h++;
+                count++;
+            }
+            head = h;
+            return count;
+        }
+
+        private void write(StringBuilder batch) throws IOException {
+            out.append(batch);
+            written += batch.length();
+            Stats.count("transcript.bytes", batch.length());
+            if (written >= rotateBytes) {
+                out.close();
+                open();
+            }
+        }
+
+        private void open() throws IOException {
+            String name = prefix + "-" + (fileIndex++) + (compress ? ".ndjson.gz" : ".ndjson");
+            // never truncate a file another run may be writing
+            OutputStream file = Files.newOutputStream(
+                    new File(directory, name).toPath(), StandardOpenOption.CREATE_NEW);
+            if (compress) {
+                file = new GZIPOutputStream(file, 64 * 1024);
+            }
+            out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+            written = 0;
+        }
+
+        // the writer drains what is left, then closes the file
+        void close() {
+            stopping = true;
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.remove(this);
+        }
+    }
+
+    static {
+        // a run that ends without llm:stop-transcript still gets its last batch
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> running.forEach(Output::close), "llm-transcript-flush"));
+    }
+}
@@ -0,0 +1,97 @@
+package llm.transcript;
+
+/**
+ * One line of the transcript. "turn" records come from ChatSession.ask and
+ * hold the prompt and the reply; "async" records come from the workers and
+ * hold the scheduling side of the same turn, tied together by session id.
+ */
+final class TranscriptRecord {
+    final String type;
+    final long timestamp; // epoch millis when the record was made
+    final long sessionId;
+    final String role;
+    final String handle; // async only
+    final String prompt;
+    final String reply;
+    final int tokens;
+    final long firstTokenNanos;
+    final long latencyNanos;
+    final long queueNanos; // async only
+    final boolean succeeded;
+
+    TranscriptRecord(String type, long sessionId, String role, String handle, String prompt, String reply,
+            int tokens, long firstTokenNanos, long latencyNanos, long queueNanos, boolean succeeded) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+        this.sessionId = sessionId;
+        this.role = role;
+        this.handle = handle;
+        this.prompt = prompt;
+        this.reply = reply;
+        this.tokens = tokens;
+        this.firstTokenNanos = firstTokenNanos;
+        this.latencyNanos = latencyNanos;
+        this.queueNanos = queueNanos;
+        this.succeeded = succeeded;
+    }
+
+    /*
+     * NDJSON line without the trailing newline; written by hand since it
+     * runs for every record
+     */
+    void appendJson(StringBuilder out) {
+        out.append("{\"ts\":").append(timestamp);
+        out.append(",\"type\":\"").append(type).append('"');
+        out.append(",\"session\":").append(sessionId);
+        field(out, "role", role);
+        field(out, "handle", handle);
+        field(out, "prompt", prompt);
+        field(out, "reply", reply);
+        out.append(",\"tokens\":").append(tokens);
+        millis(out, "ttft_ms", firstTokenNanos);
+        millis(out, "latency_ms", latencyNanos);
+        millis(out, "queue_ms", queueNanos);
+        out.append(",\"ok\":").append(succeeded);
+        out.append('}');
+    }
+
+    private static void millis(StringBuilder out, String name, long nanos) {
+        if (nanos >= 0) {
+            out.append(",\"").append(name).append("\":").append(nanos / 1_000_000.0);
+        }
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
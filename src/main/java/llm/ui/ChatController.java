@@ -2,18 +2,22 @@ package llm.ui;
 
 import com.formdev.flatlaf.FlatLightLaf;
 import com.google.gson.JsonObject;
-import ollama.OllamaClient;
+import llm.cascade.ModelCascade;
+import llm.cascade.ReplyValidator;
+import ollama.GenerateRequest;
+import ollama.Termination;
+import ollama.TokenData;
 import org.nlogo.window.GUIWorkspace;
+import utils.Log;
 
 import javax.swing.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Stream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Manages the chat pane lifecycle and orchestrates LLM calls via OllamaClient.
+ * Manages the chat pane lifecycle and orchestrates LLM calls via the current backend.
  */
 public class ChatController {
     private final ChatPane pane;
@@ -23,6 +27,9 @@ public class ChatController {
     private final List<String> recentNetLogoCode = new ArrayList<>(); // Track last 5 code parts
     private static final int MAX_CODE_HISTORY = 5;
     private String systemPrompt = ChatControllerConfig.DEFAULT_SYSTEM_PROMPT;
+    private final ModelCascade cascade = new ModelCascade(ChatControllerConfig.MODELS);
+    // published when a reply is rejected, compared by identity: the next model starts over
+    private static final String RESTART = new String("restart");
 
     static {
         // Apply FlatLaf theme
@@ -42,7 +49,7 @@ public class ChatController {
 
         if (matcher.find()) {
             String newCode = matcher.group(1).trim();
-            System.out.println("DEBUG: Extracted NetLogo code: " + newCode);
+            Log.debug(() -> "Extracted NetLogo code: " + newCode);
 
             // Add to recent code history
             recentNetLogoCode.add(newCode);
@@ -52,7 +59,7 @@ public class ChatController {
                 recentNetLogoCode.remove(0); // Remove oldest
             }
 
-            System.out.println("DEBUG: Code history size: " + recentNetLogoCode.size());
+            Log.debug(() -> "Code history size: " + recentNetLogoCode.size());
         }
     }
 
@@ -81,10 +88,10 @@ public class ChatController {
 
     private void runGeneratedCode() {
         String code = pane.getLastGeneratedCode();
-        System.out.println("DEBUG: Attempting to run code: '" + code + "'");
+        Log.debug(() -> "Attempting to run code: '" + code + "'");
 
         if (code.isEmpty()) {
-            System.out.println("DEBUG: No code to run");
+            Log.debug(() -> "No code to run");
             JOptionPane.showMessageDialog(frame,
                     "No NetLogo code found to run. Please generate some code first.",
                     "No Code to Run",
@@ -104,12 +111,12 @@ public class ChatController {
             @Override
             protected Void doInBackground() throws Exception {
                 try {
-                    System.out.println("DEBUG: Executing NetLogo code in background thread");
+                    Log.debug(() -> "Executing NetLogo code in background thread");
                     workspace.command(code);
-                    System.out.println("DEBUG: NetLogo execution succeeded");
+                    Log.debug(() -> "NetLogo execution succeeded");
                     success = true;
                 } catch (Exception e) {
-                    System.out.println("DEBUG: NetLogo execution failed: " + e.getMessage());
+                    Log.debug(() -> "NetLogo execution failed: " + e.getMessage());
                     e.printStackTrace();
                     errorMessage = e.getMessage();
                     success = false;
@@ -161,28 +168,33 @@ public class ChatController {
                 try {
                     // Place system prompt and examples BEFORE the user query
                     String prompt = systemPrompt + "\nUser request:\n" + trimmed;
-                    List<String> emptyHistory = new ArrayList<>();
-
-                    System.out.println("DEBUG: Sending prompt: " + prompt);
-
-                    Stream<String> tokens = OllamaClient.getInstance()
-                            .ask(prompt, emptyHistory) // Send the system prompt and user query
-                            .map(tokenData -> tokenData.getToken());
-
-                    StringBuilder reply = new StringBuilder();
-                    tokens.forEach(token -> {
-                        reply.append(token);
-                        publish(token);
+                    Log.debug(() -> "Sending prompt: " + prompt);
+
+                    // Send the system prompt and user query; the reply is one code
+                    // block, so the stream is closed after its closing fence
+                    GenerateRequest request = new GenerateRequest(prompt)
+                            .setTermination(Termination.codeBlock(ChatControllerConfig.MAX_TOKENS));
+
+                    // small models first; code that does not compile goes to the next one
+                    return cascade.generate(request, ReplyValidator.code(workspace), new ModelCascade.Listener() {
+                        @Override
+                        public void onToken(TokenData token) {
+                            publish(token.getToken());
+
+                            // Add small delay for smoother character-by-character display
+                            try {
+                                Thread.sleep(10); // 10ms delay between characters
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
 
-                        // Add small delay for smoother character-by-character display
-                        try {
-                            Thread.sleep(10); // 10ms delay between characters
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
+                        @Override
+                        public void onEscalate(String rejectedModel, String reason) {
+                            Log.debug(() -> rejectedModel + " reply rejected (" + reason + "), escalating");
+                            publish(RESTART);
                         }
                     });
-
-                    return reply.toString();
                 } catch (Exception ex) {
                     publish("\n[Error] " + ex.getMessage());
                     return null;
@@ -192,7 +204,13 @@ public class ChatController {
             @Override
             protected void process(List<String> chunks) {
                 // Process tokens on EDT for smooth display
-                chunks.forEach(pane::appendStreamingToken);
+                for (String chunk : chunks) {
+                    if (chunk == RESTART) {
+                        pane.restartStreamingMessage();
+                    } else {
+                        pane.appendStreamingToken(chunk);
+                    }
+                }
             }
 
             @Override
@@ -4,10 +4,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 
+import utils.Log;
 import utils.StringUtils;
 
 public class ChatControllerConfig {
+  // cap on generated tokens per copilot reply, enough for a long procedure
+  public static final int MAX_TOKENS = 1024;
+  // copilot models from small to large, e.g. -Dllm.copilot-models=qwen2.5-coder:1.5b,qwen2.5-coder:7b;
+  // unset means the backend's default model alone
+  public static final List<String> MODELS = parseModels(System.getProperty("llm.copilot-models", ""));
   public static final String DEFAULT_SYSTEM_PROMPT = "You are a NetLogo coding assistant. Respond ONLY with the following format and nothing else:\n\n"
       +
       "CODE:\n```netlogo\n[NetLogo code here]\n```\n\n" +
@@ -16,6 +24,19 @@ public class ChatControllerConfig {
       "Do NOT copy or cite the examples below. Generate a new answer for the user request. " +
       "Here are some examples to guide you (do not copy them):\n\n" + loadNetLogoExamples();
 
+  private static List<String> parseModels(String property) {
+    List<String> models = new ArrayList<>();
+    for (String model : property.split(",")) {
+      if (!model.isBlank()) {
+        models.add(model.trim());
+      }
+    }
+    if (models.isEmpty()) {
+      models.add(null);
+    }
+    return models;
+  }
+
   private static String loadNetLogoExamples() {
     StringBuilder examples = new StringBuilder();
     try (InputStream is = ChatControllerConfig.class.getResourceAsStream("/netlogo_fine_tune.csv");
@@ -43,7 +64,7 @@ public class ChatControllerConfig {
       // Return a few basic examples if file loading fails
       return "Example: Create 10 turtles\nCODE:\n```netlogo\ncrt 10\n```\n\n";
     }
-    System.out.println("DEBUG: Loaded NetLogo examples:\n" + examples);
+    Log.debug(() -> "Loaded NetLogo examples:\n" + examples);
     return examples.toString();
   }
 }
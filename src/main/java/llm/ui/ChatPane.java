@@ -1,9 +1,5 @@
 package llm.ui;
 
-import org.commonmark.node.Node;
-import org.commonmark.parser.Parser;
-import org.commonmark.renderer.html.HtmlRenderer;
-
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -12,30 +8,26 @@ import java.util.regex.Pattern;
 
 /**
  * Swing panel displaying chat history and accepting user input.
+ * The history is a {@link MessageList}, so appending costs the same
+ * however long the session is.
  */
 class ChatPane extends JPanel {
-    private final JEditorPane historyPane = new JEditorPane();
+    private final MessageList history = new MessageList();
     private final JScrollPane scroll;
     private final JTextField inputField = new JTextField();
     private final JButton sendButton = new JButton("Send");
     private final JButton runCodeButton = new JButton("Run Code");
-    private final Parser mdParser = Parser.builder().build();
-    private final HtmlRenderer mdRenderer = HtmlRenderer.builder().build();
-    private final StringBuilder html = new StringBuilder();
     private final StringBuilder currentAssistantMessage = new StringBuilder();
+    private MessageList.Message streamingMessage; // null when not streaming
     private String lastGeneratedCode = "";
     private boolean isStreamingMessage = false;
-    private boolean isLoading = false;
 
     ChatPane() {
         setLayout(new BorderLayout(8, 8));
         setBorder(new EmptyBorder(12, 12, 12, 12));
 
-        historyPane.setContentType("text/html");
-        historyPane.setEditable(false);
-        html.append("<html><body style='font-family:JetBrains Mono,monospace;'>");
-
-        scroll = new JScrollPane(historyPane);
+        scroll = new JScrollPane(history);
+        scroll.getVerticalScrollBar().setUnitIncrement(16);
         add(scroll, BorderLayout.CENTER);
 
         JPanel inputPanel = new JPanel(new BorderLayout(4, 0));
@@ -86,19 +78,10 @@ class ChatPane extends JPanel {
     void startStreamingMessage() {
         if (!isStreamingMessage) {
             isStreamingMessage = true;
-            isLoading = true;
             currentAssistantMessage.setLength(0);
 
-            // Append sender label
-            html.append("<div style='font-weight:bold;color:#333;padding:4px 0;text-align:left;'>Assistant</div>");
-            // Start message bubble with loading indicator
-            html.append(
-                    "<div style='background:transparent;padding:8px;margin:4px 0;border-radius:4px;text-align:left;'>");
-            html.append("<span style='color:#666;font-style:italic;'>● Generating response...</span>");
-
-            // Update display
-            String tempHtml = html.toString() + "</div></body></html>";
-            historyPane.setText(tempHtml);
+            // empty streaming message shows the loading indicator
+            streamingMessage = history.add("Assistant", "", "transparent", "left", true);
             autoScroll();
         }
     }
@@ -108,52 +91,31 @@ class ChatPane extends JPanel {
             startStreamingMessage();
         }
 
-        // Remove loading indicator on first token
-        if (isLoading) {
-            isLoading = false;
-            // Remove the loading text by backing up in HTML
-            String htmlStr = html.toString();
-            int loadingStart = htmlStr
-                    .lastIndexOf("<span style='color:#666;font-style:italic;'>● Generating response...</span>");
-            if (loadingStart != -1) {
-                html.setLength(loadingStart);
-            }
-        }
-
         currentAssistantMessage.append(token);
 
-        // Render the current message as markdown
-        Node doc = mdParser.parse(currentAssistantMessage.toString());
-        String htmlFragment = mdRenderer.render(doc);
-
-        // Update the HTML content with typing cursor
-        String typingCursor = "<span style='animation: blink 1s infinite;'>|</span>";
-        String tempHtml = html.toString() + htmlFragment + typingCursor + "</div></body></html>";
-
-        // Add CSS for blinking cursor
-        tempHtml = tempHtml.replace("<html><body",
-                "<html><head><style>@keyframes blink { 0%, 50% { opacity: 1; } 51%, 100% { opacity: 0; } }</style></head><body");
+        // re-render only the streaming message, with a typing cursor
+        boolean follow = history.isAtEnd();
+        history.update(streamingMessage, currentAssistantMessage.toString(), true);
+        if (follow) {
+            autoScroll();
+        }
+    }
 
-        historyPane.setText(tempHtml);
-        autoScroll();
+    // drops the streamed text, e.g. when a larger model answers instead
+    void restartStreamingMessage() {
+        if (isStreamingMessage) {
+            currentAssistantMessage.setLength(0);
+            history.update(streamingMessage, "", true);
+        }
     }
 
     void finishStreamingMessage() {
         if (isStreamingMessage) {
             isStreamingMessage = false;
-            isLoading = false;
 
             // Render final message without cursor
-            Node doc = mdParser.parse(currentAssistantMessage.toString());
-            String htmlFragment = mdRenderer.render(doc);
-
-            // Finalize the message in HTML (remove cursor)
-            String finalHtml = html.toString() + htmlFragment + "</div>";
-            html.setLength(0);
-            html.append(finalHtml);
-
-            // Update display
-            historyPane.setText(html.toString() + "</body></html>");
+            history.update(streamingMessage, currentAssistantMessage.toString(), false);
+            streamingMessage = null;
 
             // Extract and store code from the complete message
             extractAndStoreCode(currentAssistantMessage.toString());
@@ -174,9 +136,7 @@ class ChatPane extends JPanel {
     }
 
     private void autoScroll() {
-        SwingUtilities.invokeLater(() -> {
-            historyPane.setCaretPosition(historyPane.getDocument().getLength());
-        });
+        history.scrollToEnd();
     }
 
     void setUIEnabled(boolean enabled) {
@@ -235,18 +195,7 @@ class ChatPane extends JPanel {
     }
 
     protected void appendMessage(String sender, String md, String bgColor, String align) {
-        Node doc = mdParser.parse(md);
-        String htmlFragment = mdRenderer.render(doc);
-
-        html.append(String.format(
-                "<div style='font-weight:bold;color:#333;padding:4px 0;text-align:%s;'>%s</div>",
-                align, sender));
-        html.append(String.format(
-                "<div style='background:%s;padding:8px;margin:4px 0;border-radius:4px;text-align:%s;'>%s</div>",
-                bgColor, align, htmlFragment));
-
-        historyPane.setText(html.append("</body></html>").toString());
-        html.setLength(html.length() - "</body></html>".length());
+        history.add(sender, md, bgColor, align, false);
         autoScroll();
     }
 }
\ No newline at end of file
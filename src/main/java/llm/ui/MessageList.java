@@ -0,0 +1,309 @@
+package llm.ui;
+
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Virtualized chat transcript. Messages keep their markdown and render
+ * lazily: HTML is produced by commonmark the first time a message is shown
+ * and cached, and only messages inside the viewport get an editor pane to
+ * lay out and paint. Off-screen heights are estimated until measured.
+ * Past the cap the oldest messages are dropped, and panes of messages that
+ * scrolled away are released, so a window left open all day stays cheap.
+ * A streamed token only re-estimates the growing message, from where the
+ * last estimate stopped, and shifts the messages below it.
+ * Double-click copies a message's markdown.
+ */
+class MessageList extends JComponent implements Scrollable {
+    private static final int MAX_MESSAGES = Integer.getInteger("llm.chat.max-messages", 500);
+    private static final int MAX_VIEWS = 64; // rendered panes kept around
+    private static final int LINE_HEIGHT = 18; // for height estimates
+    private static final String LOADING = "<span style='color:#666;font-style:italic;'>● Generating response...</span>";
+    private static final String CURSOR = "<span>|</span>";
+
+    private static final Parser mdParser = Parser.builder().build();
+    private static final HtmlRenderer mdRenderer = HtmlRenderer.builder().build();
+
+    private final List<Message> messages = new ArrayList<>();
+    private final CellRendererPane rendererPane = new CellRendererPane();
+    private final Map<Message, JEditorPane> views = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Message, JEditorPane> eldest) {
+            return size() > MAX_VIEWS;
+        }
+    };
+    private int[] tops = new int[1]; // tops[i] is the y of message i, tops[size] the total height
+    private int layoutWidth = -1;
+
+    /**
+     * One transcript entry. Everything here is touched on the EDT only.
+     */
+    static final class Message {
+        private final String sender;
+        private final String background;
+        private final String align;
+        private String markdown;
+        private boolean streaming;
+        private String html; // cached render, null until shown
+        private int height = -1; // measured at layoutWidth, -1 if estimated
+        // estimate scan over markdown[0, scanned) at estimateWidth, resumed as text is appended
+        private int estimateWidth = -1;
+        private int scanned;
+        private int lines;
+        private int run;
+
+        Message(String sender, String markdown, String background, String align, boolean streaming) {
+            this.sender = sender;
+            this.background = background;
+            this.markdown = markdown;
+            this.align = align;
+            this.streaming = streaming;
+        }
+
+        String getMarkdown() {
+            return markdown;
+        }
+
+        private String html() {
+            if (html == null) {
+                String body = markdown.isEmpty() && streaming
+                        ? LOADING
+                        : mdRenderer.render(mdParser.parse(markdown)) + (streaming ? CURSOR : "");
+                html = "<html><body style='font-family:JetBrains Mono,monospace;'>"
+                        + String.format("<div style='font-weight:bold;color:#333;padding:4px 0;text-align:%s;'>%s</div>",
+                                align, sender)
+                        + String.format("<div style='background:%s;padding:8px;margin:4px 0;text-align:%s;'>%s</div>",
+                                background, align, body)
+                        + "</body></html>";
+            }
+            return html;
+        }
+
+        private int estimate(int width) {
+            if (width != estimateWidth) {
+                estimateWidth = width;
+                scanned = 0;
+                lines = 2;
+                run = 0;
+            }
+            int columns = Math.max(20, width / 8);
+            for (; scanned < markdown.length(); scanned++) {
+                if (markdown.charAt(scanned) == '\n' || ++run >= columns) {
+                    lines++;
+                    run = 0;
+                }
+            }
+            return (lines + 2) * LINE_HEIGHT;
+        }
+
+        private int height(int width) {
+            return height >= 0 ? height : estimate(width);
+        }
+    }
+
+    MessageList() {
+        add(rendererPane);
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    int index = indexAt(e.getY());
+                    if (index >= 0) {
+                        Toolkit.getDefaultToolkit().getSystemClipboard()
+                                .setContents(new StringSelection(messages.get(index).markdown), null);
+                    }
+                }
+            }
+        });
+    }
+
+    Message add(String sender, String markdown, String background, String align, boolean streaming) {
+        Message message = new Message(sender, markdown, background, align, streaming);
+        messages.add(message);
+        if (messages.size() > MAX_MESSAGES) {
+            List<Message> dropped = messages.subList(0, messages.size() - MAX_MESSAGES);
+            dropped.forEach(views::remove);
+            dropped.clear();
+            relayout();
+        } else if (currentWidth() != layoutWidth) {
+            relayout();
+        } else {
+            int size = messages.size();
+            tops = Arrays.copyOf(tops, size + 1);
+            tops[size] = tops[size - 1];
+            resize(size - 1);
+        }
+        return message;
+    }
+
+    /**
+     * Replaces the markdown of a message, e.g. the one being streamed;
+     * only that message is rendered again.
+     */
+    void update(Message message, String markdown, boolean streaming) {
+        if (!markdown.startsWith(message.markdown)) {
+            message.estimateWidth = -1; // not an append: estimate from scratch
+        }
+        message.markdown = markdown;
+        message.streaming = streaming;
+        message.html = null;
+        message.height = -1;
+        JEditorPane view = views.get(message);
+        if (view != null) {
+            view.setText(message.html());
+        }
+        int index = messages.lastIndexOf(message); // the streamed message is usually last
+        if (currentWidth() != layoutWidth) {
+            relayout();
+        } else if (index >= 0) {
+            resize(index);
+        }
+    }
+
+    boolean isAtEnd() {
+        Rectangle visible = getVisibleRect();
+        return visible.y + visible.height >= getHeight() - LINE_HEIGHT;
+    }
+
+    void scrollToEnd() {
+        SwingUtilities.invokeLater(() -> scrollRectToVisible(new Rectangle(0, Math.max(0, tops[messages.size()] - 1), 1, 1)));
+    }
+
+    private void relayout() {
+        int width = currentWidth();
+        if (width != layoutWidth) {
+            layoutWidth = width;
+            for (Message message : messages) {
+                message.height = -1; // measured again when shown
+            }
+        }
+        int[] newTops = new int[messages.size() + 1];
+        for (int i = 0; i < messages.size(); i++) {
+            newTops[i + 1] = newTops[i] + messages.get(i).height(width);
+        }
+        boolean resized = tops.length == 0 || newTops[newTops.length - 1] != tops[tops.length - 1];
+        tops = newTops;
+        if (resized) {
+            revalidate();
+        }
+        repaint();
+    }
+
+    /*
+     * Takes the current height of message index and moves the messages
+     * below it by the change, without touching the others
+     */
+    private void resize(int index) {
+        int delta = tops[index] + messages.get(index).height(layoutWidth) - tops[index + 1];
+        if (delta != 0) {
+            for (int i = index + 1; i < tops.length; i++) {
+                tops[i] += delta;
+            }
+            revalidate();
+        }
+        repaint();
+    }
+
+    private int currentWidth() {
+        Container parent = getParent();
+        int width = parent instanceof JViewport ? parent.getWidth() : getWidth();
+        return Math.max(100, width);
+    }
+
+    // first message whose bottom is below y
+    private int indexAt(int y) {
+        int index = Arrays.binarySearch(tops, 0, messages.size() + 1, y);
+        index = index >= 0 ? index : -index - 2;
+        return index >= 0 && index < messages.size() ? index : -1;
+    }
+
+    private JEditorPane view(Message message) {
+        JEditorPane view = views.get(message);
+        if (view == null) {
+            view = new JEditorPane();
+            view.setContentType("text/html");
+            view.setEditable(false);
+            view.setText(message.html());
+            views.put(message, view);
+        }
+        return view;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        Rectangle clip = g.getClipBounds();
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (currentWidth() != layoutWidth) {
+            relayout();
+        }
+
+        // measure what is visible; estimates elsewhere only shift the scroll range
+        boolean changed = false;
+        int first = Math.max(0, indexAt(clip.y));
+        for (int i = first; i < messages.size() && tops[i] < clip.y + clip.height; i++) {
+            Message message = messages.get(i);
+            if (message.height < 0) {
+                JEditorPane view = view(message);
+                view.setSize(layoutWidth, Short.MAX_VALUE);
+                message.height = view.getPreferredSize().height;
+                resize(i);
+                changed = true;
+            }
+        }
+        if (changed) {
+            return; // paints again with the measured heights
+        }
+
+        for (int i = first; i < messages.size() && tops[i] < clip.y + clip.height; i++) {
+            Message message = messages.get(i);
+            rendererPane.paintComponent(g, view(message), this, 0, tops[i], layoutWidth, message.height, true);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(currentWidth(), tops[messages.size()]);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(400, 400);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return LINE_HEIGHT;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
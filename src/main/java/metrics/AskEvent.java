@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.*;
+
+/**
+ * One ChatSession.ask turn, including memory lookups and history updates.
+ */
+@Name("llm.Ask")
+@Label("LLM Ask")
+@Category({ "NetLogo", "LLM" })
+@Description("A chat session turn")
+public class AskEvent extends Event {
+    @Label("Session Role")
+    public String role;
+
+    @Label("Session Id")
+    public long sessionId;
+
+    @Label("Prompt Length")
+    public int promptLength;
+
+    @Label("Reply Length")
+    public int replyLength;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Time to First Token")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeToFirstToken;
+}
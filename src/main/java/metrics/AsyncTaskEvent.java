@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Execution of one async request on the LLMAskAsync executor.
+ */
+@Name("llm.AsyncTask")
+@Label("LLM Async Task")
+@Category({ "NetLogo", "LLM" })
+@Description("An async ask, from leaving the queue to completion")
+public class AsyncTaskEvent extends Event {
+    @Label("Handle")
+    public String handle;
+
+    @Label("Session Role")
+    public String role;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Post-processing")
+    @Timespan(Timespan.NANOSECONDS)
+    public long postProcess;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
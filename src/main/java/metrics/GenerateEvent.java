@@ -0,0 +1,36 @@
+package metrics;
+
+import jdk.jfr.*;
+
+/**
+ * One generation request on any backend, blocking or streaming, from
+ * entering the concurrency limiter to the end of the stream.
+ */
+@Name("llm.Generate")
+@Label("LLM Generate")
+@Category({ "NetLogo", "LLM" })
+@Description("Generation request, including the wait for a limiter slot and token streaming")
+public class GenerateEvent extends Event {
+    @Label("Backend")
+    public String backend;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Prompt Length")
+    public int promptLength;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    @Label("Time to First Token")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeToFirstToken;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,22 @@
+package metrics;
+
+import jdk.jfr.*;
+
+/**
+ * A poll of one or more async handles from the NetLogo job thread.
+ */
+@Name("llm.Poll")
+@Label("LLM Poll")
+@Category({ "NetLogo", "LLM" })
+@Description("llm:poll-conversation, llm:poll or llm:poll-all")
+public class PollEvent extends Event {
+    @Label("Handle")
+    @Description("The polled handle, or the first one for poll-all")
+    public String handle;
+
+    @Label("Handles")
+    public int handles;
+
+    @Label("Chunks")
+    public int chunks;
+}
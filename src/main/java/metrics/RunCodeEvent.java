@@ -0,0 +1,18 @@
+package metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Compilation and execution of generated NetLogo code.
+ */
+@Name("llm.RunCode")
+@Label("LLM Run Code")
+@Category({ "NetLogo", "LLM" })
+@Description("llm:run-code")
+public class RunCodeEvent extends Event {
+    @Label("Code Length")
+    public int codeLength;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
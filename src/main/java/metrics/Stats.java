@@ -0,0 +1,61 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process aggregate of the numbers the JFR events carry, for runs
+ * without a recording. Timers keep count, total and max; counters a total.
+ */
+public final class Stats {
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private Stats() {
+    }
+
+    public static void time(String name, long nanos) {
+        timers.computeIfAbsent(name, n -> new Timer()).record(nanos);
+    }
+
+    public static void count(String name, long amount) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Timers as [name count mean-ms max-ms], then counters as [name total],
+     * each group sorted by name.
+     */
+    public static List<List<Object>> snapshot() {
+        List<List<Object>> rows = new ArrayList<>();
+        new TreeMap<>(timers).forEach((name, timer) -> {
+            long count = timer.count.sum();
+            double mean = count == 0 ? 0 : timer.total.sum() / (double) count / 1e6;
+            rows.add(List.of(name, (double) count, mean, timer.max.get() / 1e6));
+        });
+        new TreeMap<>(counters).forEach((name, total) -> rows.add(List.of(name, (double) total.sum())));
+        return rows;
+    }
+
+    public static void reset() {
+        timers.clear();
+        counters.clear();
+    }
+
+    private static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
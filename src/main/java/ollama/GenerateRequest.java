@@ -0,0 +1,129 @@
+package ollama;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameters of one generate call, in Ollama's /api/generate shape; other
+ * backends translate them.
+ */
+public class GenerateRequest {
+    private final String prompt;
+    private String model; // null for the backend's default model
+    private JsonElement format; // "json" or a JSON schema, null for free text
+    private boolean deduplicate; // share the stream with identical in-flight requests
+    private Termination termination = Termination.NONE;
+    private int[] context; // state returned by the previous /api/generate call, null to start fresh
+    private List<Map<String, String>> messages; // the conversation ending with the prompt, null for the prompt alone
+
+    public GenerateRequest(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public GenerateRequest setModel(String model) {
+        this.model = model;
+        return this;
+    }
+
+    public JsonElement getFormat() {
+        return format;
+    }
+
+    public GenerateRequest setFormat(JsonElement format) {
+        this.format = format;
+        return this;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public GenerateRequest setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public int[] getContext() {
+        return context;
+    }
+
+    /**
+     * Continues the conversation Ollama encoded in these context tokens.
+     * Only /api/generate uses them; other endpoints and backends ignore them.
+     */
+    public GenerateRequest setContext(int[] context) {
+        this.context = context;
+        return this;
+    }
+
+    public List<Map<String, String>> getMessages() {
+        return messages;
+    }
+
+    /**
+     * The conversation so far as {role, content} messages with the roles
+     * system, user and assistant, ending with the prompt. Backends without
+     * context tokens send it in place of the bare prompt; Ollama's context
+     * tokens already carry the conversation, so it ignores them.
+     */
+    public GenerateRequest setMessages(List<Map<String, String>> messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    public Termination getTermination() {
+        return termination;
+    }
+
+    public GenerateRequest setTermination(Termination termination) {
+        this.termination = termination != null ? termination : Termination.NONE;
+        return this;
+    }
+
+    /**
+     * The request body. Two requests with the same body produce the same
+     * reply under deterministic sampling, which is what deduplication keys on.
+     */
+    public String toJson() {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("model", model != null ? model : OllamaConfig.MODEL);
+        jsonObject.addProperty("prompt", prompt);
+        jsonObject.addProperty("stream", true); // Enable streaming for real-time token output
+        if (format != null) {
+            jsonObject.add("format", format);
+        }
+        if (context != null) {
+            JsonArray tokens = new JsonArray(context.length);
+            for (int token : context) {
+                tokens.add(token);
+            }
+            jsonObject.add("context", tokens);
+        }
+        if (!termination.getStop().isEmpty() || termination.getMaxTokens() > 0) {
+            JsonObject options = new JsonObject();
+            if (!termination.getStop().isEmpty()) {
+                JsonArray stop = new JsonArray();
+                termination.getStop().forEach(stop::add);
+                options.add("stop", stop);
+            }
+            if (termination.getMaxTokens() > 0) {
+                options.addProperty("num_predict", termination.getMaxTokens());
+            }
+            jsonObject.add("options", options);
+        }
+        return new Gson().toJson(jsonObject);
+    }
+}
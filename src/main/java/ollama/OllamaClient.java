@@ -1,47 +1,148 @@
 package ollama;
 
+import backend.LLMBackend;
+import backend.LinePublisher;
 import com.google.gson.*;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
 import java.util.stream.*;
 
-public class OllamaClient {
-    private static HttpClient CLIENT = HttpClient.newHttpClient();
-    public static final OllamaClient INSTANCE = new OllamaClient();
-
-    private OllamaClient() {
+public class OllamaClient implements LLMBackend {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    public static final OllamaClient INSTANCE = new OllamaClient(OllamaConfig.BASE_URI, OllamaConfig.EMBED_MODEL);
+    private final String baseUrl; // e.g. http://localhost:11434
+    private final String embedModel;
+    private final Set<InputStream> open = ConcurrentHashMap.newKeySet(); // bodies still streaming
+    private final Set<LinePublisher.Live> openAsync = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A client for an Ollama server other than the local default, or with
+     * another embedding model. Most callers use getInstance.
+     */
+    public OllamaClient(String baseUrl, String embedModel) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.embedModel = embedModel;
     }
 
     public static OllamaClient getInstance() {
         return INSTANCE;
     }
 
-    public Stream<TokenData> ask(String prompt, List<String> history) throws Exception {
-        // No need to combine history; just send the prompt
-        return OllamaClient.generate(prompt);
+    @Override
+    public String name() {
+        return baseUrl.equals(OllamaConfig.BASE_URI) ? "ollama" : "ollama:" + baseUrl;
+    }
+
+    private static class EmbedResponse {
+        float[][] embeddings;
+    }
+
+    /*
+     * Embeds all texts in a single /api/embed call, one vector per text in
+     * input order
+     */
+    @Override
+    public List<float[]> embed(List<String> texts) throws Exception {
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Gson gson = new Gson();
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("model", embedModel);
+        JsonArray input = new JsonArray();
+        texts.forEach(input::add);
+        jsonObject.add("input", input);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI(baseUrl + "/api/embed"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(jsonObject), StandardCharsets.UTF_8))
+                .build();
+
+        HttpResponse<String> response = OllamaClient.CLIENT.send(
+                request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new IOException("Ollama embed failed (" + response.statusCode() + "): " + response.body());
+        }
+
+        EmbedResponse parsed = gson.fromJson(response.body(), EmbedResponse.class);
+        if (parsed == null || parsed.embeddings == null || parsed.embeddings.length != texts.size()) {
+            throw new IOException("Ollama embed returned an unexpected number of vectors");
+        }
+        return Arrays.asList(parsed.embeddings);
     }
 
     private static class StreamChunk {
         String response;
+        int[] context;
     }
 
-    public static Stream<TokenData> generate(String prompt) throws Exception {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("model", OllamaConfig.MODEL);
-        jsonObject.addProperty("prompt", prompt);
-        jsonObject.addProperty("stream", true); // Enable streaming for real-time token output
-        String json = new Gson().toJson(jsonObject);
+    @Override
+    public Stream<TokenData> generate(GenerateRequest generateRequest) throws Exception {
+        return stream(baseUrl + "/api/generate", generateRequest.toJson());
+    }
 
+    @Override
+    public Flow.Publisher<TokenData> generateAsync(GenerateRequest generateRequest) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(new URI(OllamaConfig.API_URI))
+                .uri(new URI(baseUrl + "/api/generate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(generateRequest.toJson(), StandardCharsets.UTF_8))
+                .build();
+        Gson gson = new Gson();
+        return new LinePublisher(CLIENT, request, line -> {
+            try {
+                StreamChunk chunk = gson.fromJson(line, StreamChunk.class);
+                return new TokenData(chunk.response, chunk.context);
+            } catch (Exception e) {
+                return new TokenData("");
+            }
+        }, openAsync);
+    }
+
+    @Override
+    public void cancelAll() {
+        for (InputStream in : open) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        open.clear();
+        for (LinePublisher.Live stream : openAsync) {
+            stream.abort();
+        }
+    }
+
+    @Override
+    public boolean isHealthy() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(new URI(baseUrl + "/api/version"))
+                    .timeout(Duration.ofSeconds(2))
+                    .GET()
+                    .build();
+            return CLIENT.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private Stream<TokenData> stream(String uri, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI(uri))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
                 .build();
@@ -50,7 +151,6 @@ public class OllamaClient {
                 request, HttpResponse.BodyHandlers.ofInputStream());
 
         var statusCode = response.statusCode();
-
         if (statusCode != 200) {
             BufferedReader errReader = new BufferedReader(
                     new InputStreamReader(response.body(), StandardCharsets.UTF_8));
@@ -59,20 +159,22 @@ public class OllamaClient {
             while ((errLine = errReader.readLine()) != null) {
                 sbErr.append(errLine).append("\n");
             }
-            System.err.println("Ollama Error Body:\n" + sbErr);
-            return Stream.empty();
+            throw new IOException("Ollama generate failed (" + statusCode + "): " + sbErr);
         }
 
+        InputStream body = response.body();
+        open.add(body);
         BufferedReader reader = new BufferedReader(
-                new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+                new InputStreamReader(body, StandardCharsets.UTF_8));
 
         Gson gson = new Gson();
 
-        Iterator<TokenData> iterator = getTokenDataIterator(reader, gson);
+        Iterator<TokenData> iterator = untrackAtEnd(getTokenDataIterator(reader, gson), () -> open.remove(body));
 
         return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED),
                 false).onClose(() -> {
+                    open.remove(body);
                     try {
                         reader.close();
                     } catch (IOException ignored) {
@@ -103,7 +205,7 @@ public class OllamaClient {
             public TokenData next() {
                 try {
                     StreamChunk chunk = gson.fromJson(nextLine, StreamChunk.class);
-                    return new TokenData(chunk.response);
+                    return new TokenData(chunk.response, chunk.context);
                 } catch (Exception e) {
                     return new TokenData("");
                 }
@@ -112,10 +214,35 @@ public class OllamaClient {
         return iterator;
     }
 
+    /*
+     * Runs onEnd once the stream is exhausted, so cancelAll no longer
+     * holds the body
+     */
+    private static Iterator<TokenData> untrackAtEnd(Iterator<TokenData> tokens, Runnable onEnd) {
+        return new Iterator<>() {
+            boolean ended = false;
+
+            @Override
+            public boolean hasNext() {
+                boolean more = tokens.hasNext();
+                if (!more && !ended) {
+                    ended = true;
+                    onEnd.run();
+                }
+                return more;
+            }
+
+            @Override
+            public TokenData next() {
+                return tokens.next();
+            }
+        };
+    }
+
     public static void main(String[] args) throws Exception {
         String prompt = "Hey, how are you?";
         try {
-            generate(prompt)
+            getInstance().generate(new GenerateRequest(prompt))
                     .forEach(token -> System.out.print(token.getToken()));
         } catch (Exception e) {
             e.printStackTrace();
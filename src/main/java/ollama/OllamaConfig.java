@@ -1,6 +1,7 @@
 package ollama;
 
 public class OllamaConfig {
-  public static final String API_URI = "http://localhost:11434/api/generate";
+  public static final String BASE_URI = "http://localhost:11434";
   public static final String MODEL = "catsarethebest/llama3.2-4oClaude";
+  public static final String EMBED_MODEL = "nomic-embed-text";
 }
@@ -0,0 +1,162 @@
+package ollama;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * One upstream token stream shared by every caller that asked the same
+ * thing while it was in flight. Tokens are recorded as they arrive, so a
+ * late subscriber replays from the start and then follows live. Whichever
+ * subscriber needs a token that is not there yet pulls it from upstream,
+ * so the stream keeps flowing even if the first caller stops reading.
+ * Subscribers are counted; when the last one closes its stream before
+ * the end, the upstream stream is closed, freeing its limiter slot and
+ * connection.
+ */
+public class SharedGeneration {
+    private final Callable<Stream<TokenData>> upstream;
+    private final Runnable onDone;
+    private final Object pumpLock = new Object();
+    private Stream<TokenData> opened; // guarded by this
+    private Iterator<TokenData> source; // guarded by pumpLock
+
+    private final List<TokenData> tokens = new ArrayList<>(); // guarded by this
+    private boolean done = false; // guarded by this
+    private RuntimeException failure; // guarded by this
+    private int subscribers = 0; // guarded by this
+
+    public SharedGeneration(Callable<Stream<TokenData>> upstream, Runnable onDone) {
+        this.upstream = upstream;
+        this.onDone = onDone;
+    }
+
+    public Stream<TokenData> subscribe() {
+        synchronized (this) {
+            subscribers++;
+        }
+        Iterator<TokenData> iterator = new Iterator<>() {
+            private int index = 0;
+            private TokenData next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = get(index);
+                }
+                return next != null;
+            }
+
+            @Override
+            public TokenData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TokenData token = next;
+                next = null;
+                index++;
+                return token;
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(this::unsubscribe);
+    }
+
+    private void unsubscribe() {
+        Stream<TokenData> abandoned;
+        synchronized (this) {
+            if (--subscribers > 0 || done) {
+                return;
+            }
+            // a caller joining in the meantime must not get a silently cut reply
+            done = true;
+            failure = new IllegalStateException("Generation closed by all its readers");
+            abandoned = opened;
+            opened = null;
+        }
+        onDone.run();
+        if (abandoned != null) {
+            abandoned.close();
+        }
+    }
+
+    // token at index, or null once the stream has ended before it
+    private TokenData get(int index) {
+        synchronized (this) {
+            if (index < tokens.size()) {
+                return tokens.get(index);
+            }
+            if (done) {
+                return finished();
+            }
+        }
+        synchronized (pumpLock) {
+            synchronized (this) {
+                // someone may have pumped while we waited
+                if (index < tokens.size()) {
+                    return tokens.get(index);
+                }
+                if (done) {
+                    return finished();
+                }
+            }
+            TokenData token = null;
+            RuntimeException error = null;
+            try {
+                if (source == null) {
+                    Stream<TokenData> stream = upstream.call();
+                    synchronized (this) {
+                        if (done) {
+                            // every reader left while the request was admitted
+                            stream.close();
+                            return finished();
+                        }
+                        opened = stream;
+                    }
+                    source = stream.iterator();
+                }
+                if (source.hasNext()) {
+                    token = source.next();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } catch (Exception e) {
+                error = new IllegalStateException(e.getMessage(), e);
+            }
+            Stream<TokenData> ended;
+            synchronized (this) {
+                if (done) {
+                    // closed by the last reader while this pump was blocked
+                    return finished();
+                }
+                if (token != null) {
+                    tokens.add(token);
+                    return token;
+                }
+                done = true;
+                failure = error;
+                ended = opened;
+                opened = null;
+            }
+            onDone.run();
+            if (ended != null) {
+                ended.close();
+            }
+            return finished();
+        }
+    }
+
+    private TokenData finished() {
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package ollama;
+
+import java.util.List;
+
+/**
+ * When a generation should end early. Stop sequences and the token cap
+ * are sent to the server, which stops generating; the sentence limit and
+ * the code fence cutoff are applied by the client, which keeps the text up
+ * to the boundary and closes the stream there, so the server stops too.
+ */
+public final class Termination {
+    public static final Termination NONE = new Termination(List.of(), 0, 0, false);
+
+    private final List<String> stop; // server-side stop sequences, excluded from the reply
+    private final int maxTokens; // server-side cap, 0 for none
+    private final int maxSentences; // client-side, 0 for no limit
+    private final boolean closingFence; // client-side: end after the first complete ``` block
+
+    public Termination(List<String> stop, int maxTokens, int maxSentences, boolean closingFence) {
+        this.stop = List.copyOf(stop);
+        this.maxTokens = Math.max(0, maxTokens);
+        this.maxSentences = Math.max(0, maxSentences);
+        this.closingFence = closingFence;
+    }
+
+    /**
+     * For replies that are one fenced code block, as the copilot asks for.
+     */
+    public static Termination codeBlock(int maxTokens) {
+        return new Termination(List.of(), maxTokens, 0, true);
+    }
+
+    public List<String> getStop() {
+        return stop;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public int getMaxSentences() {
+        return maxSentences;
+    }
+
+    public boolean isClosingFence() {
+        return closingFence;
+    }
+
+    /**
+     * True if the client has to watch the text, i.e. newCutter is needed.
+     */
+    public boolean isClientSide() {
+        return maxSentences > 0 || closingFence;
+    }
+
+    public Cutter newCutter() {
+        return new Cutter();
+    }
+
+    /**
+     * Finds the boundary in one stream of tokens. Sentences end at a
+     * terminator followed by whitespace, as in TextPipeline, so the cut
+     * lands one character later than the terminator; the fence cutoff
+     * keeps the closing backticks.
+     */
+    public final class Cutter {
+        private int sentences = 0;
+        private boolean atTerminator = false;
+        private int backticks = 0; // run of consecutive backticks
+        private int fences = 0;
+
+        /**
+         * Reports how many characters of the token to keep before the
+         * stream ends, or -1 to keep all of it and go on.
+         */
+        public int cut(String token) {
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                if (closingFence) {
+                    backticks = c == '`' ? backticks + 1 : 0;
+                    if (backticks == 3 && ++fences == 2) {
+                        return i + 1;
+                    }
+                }
+                if (maxSentences > 0) {
+                    if (atTerminator && Character.isWhitespace(c) && ++sentences >= maxSentences) {
+                        return i;
+                    }
+                    atTerminator = c == '.' || c == '!' || c == '?'
+                            || (atTerminator && (c == '"' || c == '\'' || c == ')' || c == '”'));
+                }
+            }
+            return -1;
+        }
+    }
+}
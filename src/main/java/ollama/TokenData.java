@@ -3,9 +3,15 @@ package ollama;
 public class TokenData {
     private final String token;
     private final long timestamp;
+    private final int[] context; // backend context tokens, only on the final chunk
 
     public TokenData(String token) {
+        this(token, null);
+    }
+
+    public TokenData(String token, int[] context) {
         this.token = token;
+        this.context = context;
         this.timestamp = System.currentTimeMillis();
     }
 
@@ -17,6 +23,10 @@ public class TokenData {
         return timestamp;
     }
 
+    public int[] getContext() {
+        return context;
+    }
+
     @Override
     public String toString() {
         return "[" + timestamp + "] " + token;
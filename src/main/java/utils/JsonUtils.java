@@ -0,0 +1,60 @@
+package utils;
+
+import com.google.gson.*;
+import org.nlogo.core.LogoList;
+import org.nlogo.core.Nobody$;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class JsonUtils {
+
+    /*
+     * Turns a schema argument into an Ollama "format" value: a JSON object is
+     * sent as a schema, anything else (e.g. "json") as a plain string
+     */
+    public static JsonElement parseFormat(String schema) {
+        String trimmed = schema.trim();
+        if (trimmed.startsWith("{")) {
+            return JsonParser.parseString(trimmed);
+        }
+        return new JsonPrimitive(trimmed);
+    }
+
+    /*
+     * Converts parsed JSON into NetLogo values: arrays become lists, objects
+     * become lists of [key value] pairs (ready for table:from-list), numbers
+     * become doubles and null becomes nobody
+     */
+    public static Object toLogo(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return Nobody$.MODULE$;
+        }
+        if (element.isJsonArray()) {
+            List<Object> items = new ArrayList<>();
+            for (JsonElement item : element.getAsJsonArray()) {
+                items.add(toLogo(item));
+            }
+            return LogoList.fromJava(items);
+        }
+        if (element.isJsonObject()) {
+            List<Object> pairs = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                List<Object> pair = new ArrayList<>(2);
+                pair.add(entry.getKey());
+                pair.add(toLogo(entry.getValue()));
+                pairs.add(LogoList.fromJava(pair));
+            }
+            return LogoList.fromJava(pairs);
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        if (primitive.isNumber()) {
+            return primitive.getAsDouble();
+        }
+        return primitive.getAsString();
+    }
+}
@@ -0,0 +1,60 @@
+package utils;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Level switch for the extension's console output. The level comes from
+ * the llm.log system property or llm:set-log-level and defaults to info,
+ * so debug messages cost nothing unless asked for.
+ */
+public final class Log {
+    public enum Level {
+        OFF, ERROR, WARN, INFO, DEBUG
+    }
+
+    private static volatile Level level = levelProperty();
+
+    private Log() {
+    }
+
+    // a bad llm.log value must not keep the extension from loading
+    private static Level levelProperty() {
+        try {
+            return parse(System.getProperty("llm.log", "info"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("WARN: " + e.getMessage() + "; using info");
+            return Level.INFO;
+        }
+    }
+
+    public static Level parse(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Unknown log level \"" + name + "\", expected off, error, warn, info or debug");
+        }
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isDebug() {
+        return level.compareTo(Level.DEBUG) >= 0;
+    }
+
+    public static void warn(String message) {
+        if (level.compareTo(Level.WARN) >= 0) {
+            System.err.println("WARN: " + message);
+        }
+    }
+
+    // the message is only built when it will be printed
+    public static void debug(Supplier<String> message) {
+        if (isDebug()) {
+            System.out.println("DEBUG: " + message.get());
+        }
+    }
+}
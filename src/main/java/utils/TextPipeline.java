@@ -0,0 +1,321 @@
+package utils;
+
+/**
+ * Incremental post-processor for streamed replies.
+ * Text is pushed token by token and flows character by character through
+ * the configured stages; each push reports whatever output is final so far.
+ * Every stage holds at most a word (or one character) back, so no stage
+ * ever needs the whole reply.
+ *
+ * Typical use:
+ * TextPipeline p = new TextPipeline().unescape().stripQuotes().limitSentences(2).wrap(60);
+ * for each token: emit(p.push(token)); then emit(p.finish());
+ */
+public class TextPipeline {
+    private static final int MAX_WORD = 1024; // longer words are flushed unwrapped
+
+    private final StringBuilder out = new StringBuilder();
+    private final Stage sink = new Stage() {
+        @Override
+        void put(char c) {
+            out.append(c);
+        }
+
+        @Override
+        void finish() {
+        }
+    };
+    private Stage head = sink;
+    private Stage last = null;
+    private boolean finished = false;
+    private boolean limited = false;
+
+    /**
+     * Options for turtle replies, set with llm:set-text-options.
+     * DEFAULTS match StringUtils.unescape then wrapText(60).
+     */
+    public static final class ReplyOptions {
+        public static final ReplyOptions DEFAULTS = new ReplyOptions(60, 0, false);
+
+        private final int wrapWidth; // 0 = no wrapping
+        private final int maxSentences; // 0 = no limit
+        private final boolean stripQuotes;
+
+        public ReplyOptions(int wrapWidth, int maxSentences, boolean stripQuotes) {
+            this.wrapWidth = wrapWidth;
+            this.maxSentences = maxSentences;
+            this.stripQuotes = stripQuotes;
+        }
+    }
+
+    /**
+     * Pipeline for turtle replies: unescaping plus the given options.
+     */
+    public static TextPipeline forReplies(ReplyOptions options) {
+        TextPipeline pipeline = new TextPipeline().unescape();
+        if (options.stripQuotes) {
+            pipeline.stripQuotes();
+        }
+        if (options.maxSentences > 0) {
+            pipeline.limitSentences(options.maxSentences);
+        }
+        if (options.wrapWidth > 0) {
+            pipeline.wrap(options.wrapWidth);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Turns literal \n, \t, \r into control characters and "" into ".
+     */
+    public TextPipeline unescape() {
+        return add(new Unescape());
+    }
+
+    /**
+     * Drops quotation marks enclosing the whole reply.
+     */
+    public TextPipeline stripQuotes() {
+        return add(new StripQuotes());
+    }
+
+    /**
+     * Drops everything after the given number of sentences.
+     */
+    public TextPipeline limitSentences(int max) {
+        return add(new SentenceLimit(max));
+    }
+
+    /**
+     * Word-wraps paragraphs at the given width, like StringUtils.wrapText.
+     */
+    public TextPipeline wrap(int width) {
+        return add(new Wrap(width));
+    }
+
+    private TextPipeline add(Stage stage) {
+        stage.next = sink;
+        if (last == null) {
+            head = stage;
+        } else {
+            last.next = stage;
+        }
+        last = stage;
+        return this;
+    }
+
+    /**
+     * Feeds a token and reports the text that became final.
+     */
+    public String push(CharSequence token) {
+        if (finished) {
+            throw new IllegalStateException("Pipeline already finished");
+        }
+        for (int i = 0; i < token.length(); i++) {
+            head.put(token.charAt(i));
+        }
+        return take();
+    }
+
+    /**
+     * Flushes every stage and reports the remaining text.
+     */
+    public String finish() {
+        if (!finished) {
+            finished = true;
+            head.finish();
+        }
+        return take();
+    }
+
+    /**
+     * True once a limiting stage has cut the reply; later input is ignored,
+     * so the caller may stop reading the stream.
+     */
+    public boolean isLimited() {
+        return limited;
+    }
+
+    private String take() {
+        String text = out.toString();
+        out.setLength(0);
+        return text;
+    }
+
+    private abstract static class Stage {
+        Stage next;
+
+        abstract void put(char c);
+
+        void finish() {
+            next.finish();
+        }
+    }
+
+    private static final class Unescape extends Stage {
+        private char held = 0; // '\\' or '"' waiting for the next character
+
+        @Override
+        void put(char c) {
+            if (held == '\\') {
+                held = 0;
+                switch (c) {
+                    case 'n':
+                        next.put('\n');
+                        return;
+                    case 't':
+                        next.put('\t');
+                        return;
+                    case 'r':
+                        next.put('\r');
+                        return;
+                    default:
+                        next.put('\\');
+                }
+            } else if (held == '"') {
+                held = 0;
+                next.put('"');
+                if (c == '"') {
+                    return; // "" collapses to "
+                }
+            }
+            if (c == '\\' || c == '"') {
+                held = c;
+            } else {
+                next.put(c);
+            }
+        }
+
+        @Override
+        void finish() {
+            if (held != 0) {
+                next.put(held);
+                held = 0;
+            }
+            next.finish();
+        }
+    }
+
+    private static final class StripQuotes extends Stage {
+        private boolean started = false;
+        private final StringBuilder held = new StringBuilder(); // trailing quotes and whitespace
+
+        private static boolean isQuote(char c) {
+            return c == '"' || c == '“' || c == '”';
+        }
+
+        @Override
+        void put(char c) {
+            if (!started) {
+                if (Character.isWhitespace(c) || isQuote(c)) {
+                    return; // leading quote (and whitespace before the text)
+                }
+                started = true;
+            }
+            if (isQuote(c) || (held.length() > 0 && Character.isWhitespace(c))) {
+                held.append(c);
+                return;
+            }
+            if (Character.isWhitespace(c)) {
+                next.put(c);
+                return;
+            }
+            // not the end after all: release what was held
+            for (int i = 0; i < held.length(); i++) {
+                next.put(held.charAt(i));
+            }
+            held.setLength(0);
+            next.put(c);
+        }
+
+        @Override
+        void finish() {
+            // whatever is held sits at the very end: closing quotes and whitespace
+            held.setLength(0);
+            next.finish();
+        }
+    }
+
+    private final class SentenceLimit extends Stage {
+        private final int max;
+        private int count = 0;
+        private boolean atTerminator = false;
+
+        SentenceLimit(int max) {
+            this.max = max;
+        }
+
+        @Override
+        void put(char c) {
+            if (count >= max) {
+                return;
+            }
+            if (atTerminator && Character.isWhitespace(c)) {
+                atTerminator = false;
+                if (++count >= max) {
+                    limited = true;
+                    return;
+                }
+            }
+            atTerminator = c == '.' || c == '!' || c == '?' || (atTerminator && isCloser(c));
+            next.put(c);
+        }
+
+        // quotes or brackets right after a terminator still belong to the sentence
+        private boolean isCloser(char c) {
+            return c == '"' || c == '\'' || c == ')' || c == '”';
+        }
+    }
+
+    private static final class Wrap extends Stage {
+        private final int width;
+        private final StringBuilder word = new StringBuilder();
+        private int lineLength = 0;
+
+        Wrap(int width) {
+            this.width = width;
+        }
+
+        @Override
+        void put(char c) {
+            if (c == '\n') {
+                placeWord();
+                next.put('\n');
+                lineLength = 0;
+            } else if (Character.isWhitespace(c)) {
+                placeWord();
+            } else {
+                word.append(c);
+                if (word.length() >= MAX_WORD) {
+                    placeWord();
+                }
+            }
+        }
+
+        private void placeWord() {
+            if (word.length() == 0) {
+                return;
+            }
+            if (lineLength == 0) {
+                // first word on the line
+            } else if (lineLength + 1 + word.length() <= width) {
+                next.put(' ');
+                lineLength++;
+            } else {
+                next.put('\n');
+                lineLength = 0;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                next.put(word.charAt(i));
+            }
+            lineLength += word.length();
+            word.setLength(0);
+        }
+
+        @Override
+        void finish() {
+            placeWord();
+            next.finish();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package backend;
+
+import metrics.Stats;
+import ollama.GenerateRequest;
+import ollama.OllamaClient;
+import ollama.TokenData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerateStatsTest {
+    private final LLMBackend original = Backends.get();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new StubServer()
+                .on("/api/generate", List.of("{\"response\":\"a\"}", "{\"response\":\"b\",\"done\":true}"))
+                .on("/v1/completions", List.of(
+                        "data: {\"choices\":[{\"text\":\"a\"}]}",
+                        "data: {\"choices\":[{\"text\":\"b\"}]}",
+                        "data: [DONE]"));
+        Stats.reset();
+    }
+
+    @AfterEach
+    void stop() {
+        Backends.set(original);
+        server.close();
+        Stats.reset();
+    }
+
+    /*
+     * The snapshot row of a timer or counter, null if nothing was recorded
+     */
+    private static List<Object> stat(String name) {
+        return Stats.snapshot().stream().filter(row -> row.get(0).equals(name)).findFirst().orElse(null);
+    }
+
+    private static void generateBothWays() throws Exception {
+        try (Stream<TokenData> tokens = Backends.ask(new GenerateRequest("hi"))) {
+            assertEquals(2, tokens.count());
+        }
+        TokenSubscriber.consume(Backends.generateAsync(new GenerateRequest("hi")), token -> {
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void everyBackendAndPathIsMeasured() throws Exception {
+        Backends.set(new OllamaClient(server.url(), "unused"));
+        generateBothWays();
+        Backends.set(new OpenAICompatibleBackend(server.url() + "/v1", "model", "", null));
+        generateBothWays();
+
+        assertEquals(4.0, stat("generate.total").get(1));
+        assertEquals(4.0, stat("generate.first-token").get(1));
+        assertEquals(4.0, stat("generate.queued").get(1));
+        assertEquals(8.0, stat("generate.tokens").get(1));
+        assertNull(stat("generate.errors"));
+    }
+
+    @Test
+    void failuresAreCountedOnBothPaths() throws Exception {
+        Backends.set(new OllamaClient(server.url() + "/missing", "unused"));
+
+        assertThrows(Exception.class, () -> Backends.ask(new GenerateRequest("hi")));
+        assertThrows(ExecutionException.class, () -> TokenSubscriber.consume(
+                Backends.generateAsync(new GenerateRequest("hi")), token -> {
+                }).get(10, TimeUnit.SECONDS));
+
+        assertEquals(2.0, stat("generate.errors").get(1));
+        assertEquals(2.0, stat("generate.total").get(1));
+    }
+}
@@ -0,0 +1,139 @@
+package backend;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import ollama.GenerateRequest;
+import ollama.Termination;
+import ollama.TokenData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAICompatibleBackendTest {
+    private static final List<String> COMPLETIONS = Arrays.asList(
+            ": keep-alive",
+            "data: {\"choices\":[{\"text\":\"Hel\"}]}",
+            "",
+            "data: {\"choices\":[{\"text\":\"lo\"}]}",
+            "data: {\"choices\":[]}",
+            "data: [DONE]");
+    private static final List<String> CHAT = Arrays.asList(
+            "data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}",
+            "data: {\"choices\":[{\"delta\":{\"content\":\"Hel\"}}]}",
+            "data: {\"choices\":[{\"delta\":{\"content\":\"lo\"}}]}",
+            "data: [DONE]");
+
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new StubServer()
+                .on("/v1/completions", COMPLETIONS)
+                .on("/v1/chat/completions", CHAT)
+                .on("/v1/embeddings", List.of(
+                        "{\"data\":[{\"index\":1,\"embedding\":[0.0,1.0]},{\"index\":0,\"embedding\":[1.0,0.0]}]}"))
+                .on("/v1/models", List.of("{\"data\":[]}"));
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private OpenAICompatibleBackend backend(String embedModel) {
+        return new OpenAICompatibleBackend(server.url() + "/v1/", "chat-model", embedModel, "secret");
+    }
+
+    @Test
+    void generateStreamsServerSentEvents() throws Exception {
+        GenerateRequest request = new GenerateRequest("hi")
+                .setTermination(new Termination(List.of("\n"), 5, 0, false));
+        String reply;
+        try (Stream<TokenData> tokens = backend("embed-model").generate(request)) {
+            reply = tokens.map(TokenData::getToken).collect(Collectors.joining());
+        }
+
+        assertEquals("Hello", reply);
+        StubServer.Request sent = server.requests().get(0);
+        JsonObject body = JsonParser.parseString(sent.body).getAsJsonObject();
+        assertEquals("chat-model", body.get("model").getAsString());
+        assertEquals("hi", body.get("prompt").getAsString());
+        assertEquals("\n", body.getAsJsonArray("stop").get(0).getAsString());
+        assertEquals(5, body.get("max_tokens").getAsInt());
+        assertEquals("Bearer secret", sent.authorization);
+    }
+
+    @Test
+    void generateAsyncPushesTheSameTokens() throws Exception {
+        List<String> tokens = new ArrayList<>();
+        TokenSubscriber.consume(backend("embed-model").generateAsync(new GenerateRequest("hi")),
+                token -> tokens.add(token.getToken())).get(10, TimeUnit.SECONDS);
+
+        assertEquals("Hello", String.join("", tokens));
+    }
+
+    @Test
+    void conversationsGoToChatCompletions() throws Exception {
+        GenerateRequest request = new GenerateRequest("how are you?").setMessages(List.of(
+                Map.of("role", "system", "content", "be brief"),
+                Map.of("role", "user", "content", "hi"),
+                Map.of("role", "assistant", "content", "hello"),
+                Map.of("role", "user", "content", "how are you?")));
+        String reply;
+        try (Stream<TokenData> tokens = backend("embed-model").generate(request)) {
+            reply = tokens.map(TokenData::getToken).collect(Collectors.joining());
+        }
+        List<String> async = new ArrayList<>();
+        TokenSubscriber.consume(backend("embed-model").generateAsync(request),
+                token -> async.add(token.getToken())).get(10, TimeUnit.SECONDS);
+
+        assertEquals("Hello", reply);
+        assertEquals("Hello", String.join("", async));
+        for (StubServer.Request sent : server.requests()) {
+            assertEquals("/v1/chat/completions", sent.path);
+            JsonObject body = JsonParser.parseString(sent.body).getAsJsonObject();
+            assertFalse(body.has("prompt"));
+            JsonArray messages = body.getAsJsonArray("messages");
+            assertEquals(4, messages.size());
+            assertEquals("system", messages.get(0).getAsJsonObject().get("role").getAsString());
+            assertEquals("hello", messages.get(2).getAsJsonObject().get("content").getAsString());
+            assertEquals("how are you?", messages.get(3).getAsJsonObject().get("content").getAsString());
+        }
+    }
+
+    @Test
+    void embedUsesTheEmbeddingModelAndIndexOrder() throws Exception {
+        List<float[]> vectors = backend("embed-model").embed(List.of("a", "b"));
+
+        assertArrayEquals(new float[] { 1.0f, 0.0f }, vectors.get(0));
+        assertArrayEquals(new float[] { 0.0f, 1.0f }, vectors.get(1));
+        JsonObject body = JsonParser.parseString(server.requests().get(0).body).getAsJsonObject();
+        assertEquals("embed-model", body.get("model").getAsString());
+    }
+
+    @Test
+    void embedWithoutEmbeddingModelFailsBeforeSending() {
+        assertThrows(IOException.class, () -> backend("").embed(List.of("a")));
+        assertTrue(server.requests().isEmpty());
+    }
+
+    @Test
+    void healthFollowsTheServer() {
+        OpenAICompatibleBackend backend = backend("embed-model");
+        assertTrue(backend.isHealthy());
+        server.close();
+        assertFalse(backend.isHealthy());
+    }
+}
@@ -0,0 +1,125 @@
+package backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A local HTTP server answering each path with lines, streamed one write
+ * per line like a generating server: canned, or computed from the request
+ * body, where null answers 500. A stalled path keeps its response open
+ * after the lines until the server closes. Request bodies and headers are
+ * recorded for assertions.
+ */
+public final class StubServer implements AutoCloseable {
+    /**
+     * One recorded request.
+     */
+    public static final class Request {
+        public final String path;
+        public final String body;
+        public final String authorization;
+
+        Request(String path, String body, String authorization) {
+            this.path = path;
+            this.body = body;
+            this.authorization = authorization;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Function<String, List<String>>> responses = new ConcurrentHashMap<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final Set<String> stalled = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Answers path with these lines, each followed by a newline.
+     */
+    public StubServer on(String path, List<String> lines) {
+        return on(path, body -> lines);
+    }
+
+    public StubServer on(String path, Function<String, List<String>> reply) {
+        responses.put(path, reply);
+        return this;
+    }
+
+    /**
+     * Leaves the response of path unfinished after its lines, like a
+     * server still generating.
+     */
+    public StubServer stall(String path) {
+        stalled.add(path);
+        return this;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public List<Request> requests() {
+        return requests;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.add(new Request(path, body, exchange.getRequestHeaders().getFirst("Authorization")));
+
+        Function<String, List<String>> reply = responses.get(path);
+        if (reply == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        List<String> lines = reply.apply(body);
+        if (lines == null) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            if (stalled.contains(path)) {
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
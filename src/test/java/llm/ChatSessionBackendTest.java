@@ -0,0 +1,71 @@
+package llm;
+
+import backend.Backends;
+import backend.LLMBackend;
+import backend.OpenAICompatibleBackend;
+import backend.StubServer;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import ollama.TokenData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionBackendTest {
+    private final LLMBackend original = Backends.get();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new StubServer().on("/v1/chat/completions", List.of(
+                "data: {\"choices\":[{\"delta\":{\"content\":\"fine\"}}]}",
+                "data: [DONE]"));
+        Backends.set(new OpenAICompatibleBackend(server.url() + "/v1", "chat-model", "", null));
+    }
+
+    @AfterEach
+    void stop() {
+        Backends.set(original);
+        server.close();
+    }
+
+    private JsonArray sentMessages(int request) {
+        JsonObject body = JsonParser.parseString(server.requests().get(request).body).getAsJsonObject();
+        return body.getAsJsonArray("messages");
+    }
+
+    private static void assertMessage(String role, String content, JsonArray messages, int index) {
+        JsonObject message = messages.get(index).getAsJsonObject();
+        assertEquals(role, message.get("role").getAsString());
+        assertEquals(content, message.get("content").getAsString());
+    }
+
+    @Test
+    void turnsWithoutContextTokensSendTheWholeConversation() throws Exception {
+        // prompts are recorded under the session's role, here "assistant" like its replies
+        ChatSession session = new ChatSession("assistant", "be brief");
+
+        assertEquals("fine", session.ask(Map.of("role", "assistant", "content", "hi"))
+                .findFirst().map(TokenData::getToken).orElse(null));
+        assertEquals("fine", session.askAsync(Map.of("role", "assistant", "content", "and now?"), null, token -> {
+        }).get(10, TimeUnit.SECONDS));
+
+        JsonArray first = sentMessages(0);
+        assertEquals(2, first.size());
+        assertMessage("system", "be brief", first, 0);
+        assertMessage("user", "hi", first, 1);
+        JsonArray second = sentMessages(1);
+        assertEquals(4, second.size());
+        assertMessage("system", "be brief", second, 0);
+        assertMessage("user", "hi", second, 1);
+        assertMessage("assistant", "fine", second, 2);
+        assertMessage("user", "and now?", second, 3);
+    }
+}
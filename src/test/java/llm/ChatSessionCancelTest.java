@@ -0,0 +1,74 @@
+package llm;
+
+import backend.Backends;
+import backend.LLMBackend;
+import backend.StubServer;
+import com.google.gson.JsonObject;
+import llm.history.MessageLog;
+import ollama.OllamaClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionCancelTest {
+    private final LLMBackend original = Backends.get();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        // two tokens, then the server keeps generating until cancelled
+        server = new StubServer()
+                .on("/api/generate", List.of(chunk("par"), chunk("tial")))
+                .stall("/api/generate");
+        Backends.set(new OllamaClient(server.url(), "unused"));
+    }
+
+    @AfterEach
+    void stop() {
+        Backends.set(original);
+        server.close();
+    }
+
+    private static String chunk(String text) {
+        JsonObject chunk = new JsonObject();
+        chunk.addProperty("response", text);
+        return chunk.toString();
+    }
+
+    private static CompletableFuture<String> askUntilStalled(ChatSession session, String prompt)
+            throws InterruptedException {
+        CountDownLatch received = new CountDownLatch(2);
+        CompletableFuture<String> reply = session.askAsync(Map.of("role", "user", "content", prompt), null,
+                token -> received.countDown());
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        assertFalse(reply.isDone());
+        return reply;
+    }
+
+    @Test
+    void cancelAllCompletesAsyncTurnsWithTheTextSoFar() throws Exception {
+        ChatSession session = new ChatSession("user");
+
+        CompletableFuture<String> reply = askUntilStalled(session, "first");
+        Backends.get().cancelAll();
+
+        assertEquals("partial", reply.get(5, TimeUnit.SECONDS));
+        assertEquals(0, Backends.getLimiter().getInFlight());
+        MessageLog history = session.getHistory();
+        assertEquals("partial", history.content(history.size() - 1));
+
+        // the session's next turn is not held up by the cancelled one
+        CompletableFuture<String> next = askUntilStalled(session, "second");
+        Backends.get().cancelAll();
+        assertEquals("partial", next.get(5, TimeUnit.SECONDS));
+        assertEquals(0, Backends.getLimiter().getInFlight());
+    }
+}
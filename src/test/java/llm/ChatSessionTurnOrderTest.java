@@ -0,0 +1,179 @@
+package llm;
+
+import backend.Backends;
+import backend.LLMBackend;
+import backend.StubServer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import llm.history.MessageLog;
+import ollama.OllamaClient;
+import ollama.TokenData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionTurnOrderTest {
+    private static final int THREADS = 4;
+    private static final int TURNS = 20; // per thread
+
+    private final LLMBackend original = Backends.get();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        // replies "re:<prompt>" in two tokens, after a short random delay; prompts starting with "fail" get a 500
+        server = new StubServer().on("/api/generate", body -> {
+            String prompt = JsonParser.parseString(body).getAsJsonObject().get("prompt").getAsString();
+            if (prompt.startsWith("fail")) {
+                return null;
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(chunk("re:"), chunk(prompt), "{\"response\":\"\",\"done\":true,\"context\":[1]}");
+        });
+        Backends.set(new OllamaClient(server.url(), "unused"));
+    }
+
+    @AfterEach
+    void stop() {
+        Backends.set(original);
+        server.close();
+    }
+
+    private static String chunk(String text) {
+        JsonObject chunk = new JsonObject();
+        chunk.addProperty("response", text);
+        return chunk.toString();
+    }
+
+    private static Map<String, String> message(String prompt) {
+        return Map.of("role", "user", "content", prompt);
+    }
+
+    private List<String> sentPrompts() {
+        return server.requests().stream()
+                .map(request -> JsonParser.parseString(request.body).getAsJsonObject().get("prompt").getAsString())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void interleavedBlockingAndAsyncTurnsRunOneAtATimeInOrder() throws Exception {
+        ChatSession session = new ChatSession("user");
+        int before = session.getHistory().size();
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<List<String>> asked = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<String> mine = new ArrayList<>();
+            asked.add(mine);
+            int thread = t;
+            pool.submit(() -> {
+                go.await();
+                for (int i = 0; i < TURNS; i++) {
+                    String prompt = "t" + thread + "-" + i;
+                    mine.add(prompt);
+                    CompletableFuture<String> reply = i % 2 == 0
+                            ? session.askAsync(message(prompt), null, token -> {
+                            })
+                            : CompletableFuture.completedFuture(
+                                    session.ask(message(prompt)).findFirst().map(TokenData::getToken).orElse(null));
+                    synchronized (replies) {
+                        replies.add(reply);
+                    }
+                }
+                return null;
+            });
+        }
+        go.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        for (CompletableFuture<String> reply : replies) {
+            assertTrue(reply.get(30, TimeUnit.SECONDS).startsWith("re:"));
+        }
+
+        // every prompt is directly followed by its own reply
+        MessageLog history = session.getHistory();
+        assertEquals(before + 2 * THREADS * TURNS, history.size());
+        List<String> prompts = new ArrayList<>();
+        for (int i = before; i < history.size(); i += 2) {
+            assertEquals("user", history.role(i));
+            assertEquals("assistant", history.role(i + 1));
+            assertEquals("re:" + history.content(i), history.content(i + 1));
+            prompts.add(history.content(i));
+        }
+        // turns reached the server in the order they entered the history, one at a time
+        assertEquals(prompts, sentPrompts());
+        // and each thread's turns kept the order it asked them in
+        for (List<String> mine : asked) {
+            assertEquals(mine, prompts.stream().filter(mine::contains).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void failedAsyncTurnReleasesTheNextTurn() throws Exception {
+        ChatSession session = new ChatSession("user");
+
+        // the consumer throws on the first token
+        CompletableFuture<String> broken = session.askAsync(message("broken"), null, token -> {
+            throw new IllegalStateException("consumer failed");
+        });
+        CompletableFuture<String> failed = session.askAsync(message("fail now"), null, token -> {
+        });
+        String blocking = CompletableFuture.supplyAsync(
+                () -> session.ask(message("after")).findFirst().map(TokenData::getToken).orElse(null))
+                .get(10, TimeUnit.SECONDS);
+        String async = session.askAsync(message("last"), null, token -> {
+        }).get(10, TimeUnit.SECONDS);
+
+        assertThrows(ExecutionException.class, () -> broken.get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertEquals("re:after", blocking);
+        assertEquals("re:last", async);
+        assertEquals(List.of("broken", "fail now", "after", "last"), sentPrompts());
+    }
+
+    @Test
+    void failedBlockingTurnReleasesTheNextTurn() throws Exception {
+        ChatSession session = new ChatSession("user");
+
+        assertTrue(session.ask(message("broken"), null, token -> {
+            throw new IllegalStateException("consumer failed");
+        }).findFirst().isEmpty());
+        assertTrue(session.ask(message("fail now")).findFirst().isEmpty());
+        String async;
+        try {
+            async = session.askAsync(message("after"), null, token -> {
+            }).get(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError("turn after a failed one never started", e);
+        }
+
+        assertEquals("re:after", async);
+        // a failed turn leaves its prompt unanswered, the next prompt follows it
+        MessageLog history = session.getHistory();
+        int last = history.size() - 1;
+        assertEquals("re:after", history.content(last));
+        assertEquals("after", history.content(last - 1));
+        assertEquals("fail now", history.content(last - 2));
+        assertEquals(List.of("broken", "fail now", "after"), sentPrompts());
+    }
+}
@@ -0,0 +1,125 @@
+package llm.embed;
+
+import backend.Backends;
+import backend.LLMBackend;
+import ollama.GenerateRequest;
+import ollama.TokenData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryStoreTest {
+    private final LLMBackend original = Backends.get();
+
+    @AfterEach
+    void restore() {
+        Backends.set(original);
+        EmbeddingCache.clear();
+    }
+
+    /*
+     * Embeds locally with the given function, counting the texts it saw
+     */
+    private static final class FakeBackend implements LLMBackend {
+        private final Function<String, float[]> embedding;
+        final List<String> embedded = new ArrayList<>();
+
+        FakeBackend(Function<String, float[]> embedding) {
+            this.embedding = embedding;
+        }
+
+        @Override
+        public String name() {
+            return "fake";
+        }
+
+        @Override
+        public Stream<TokenData> generate(GenerateRequest request) {
+            return Stream.empty();
+        }
+
+        @Override
+        public Flow.Publisher<TokenData> generateAsync(GenerateRequest request) {
+            return subscriber -> subscriber.onComplete();
+        }
+
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            List<float[]> vectors = new ArrayList<>();
+            for (String text : texts) {
+                embedded.add(text);
+                vectors.add(embedding.apply(text));
+            }
+            return vectors;
+        }
+
+        @Override
+        public void cancelAll() {
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+    }
+
+    @Test
+    void backendChangeReEmbedsStoredMemories() throws Exception {
+        Backends.set(new FakeBackend(text -> text.startsWith("cat")
+                ? new float[] { 1, 0 }
+                : new float[] { 0, 1 }));
+        MemoryStore store = new MemoryStore(4, 1);
+        store.remember("cats purr");
+        store.remember("dogs bark");
+        assertEquals(List.of("cats purr"), store.recall("cat food", 1));
+
+        // three dimensions and the opposite ranking: old vectors would fail or mislead
+        FakeBackend other = new FakeBackend(text -> text.startsWith("cat")
+                ? new float[] { 0, 0, 1 }
+                : new float[] { 1, 0, 0 });
+        Backends.set(other);
+        EmbeddingCache.clear();
+
+        assertEquals(List.of("cats purr"), store.recall("cat food", 1));
+        assertTrue(other.embedded.containsAll(List.of("cats purr", "dogs bark")));
+        store.remember("dogs dig");
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void largeCapacityOnlyAllocatesWhatIsUsed() {
+        // a full matrix would be 2^31 rows of 4096 floats
+        MemoryStore store = new MemoryStore(Integer.MAX_VALUE, 1);
+        for (int i = 0; i < 100; i++) {
+            float[] vector = new float[4096];
+            vector[i] = 1;
+            store.add("memory " + i, vector);
+        }
+
+        assertEquals(100, store.size());
+        float[] query = new float[4096];
+        query[42] = 1;
+        assertEquals(List.of("memory 42"), store.nearest(new Embedding(query), 1));
+    }
+
+    @Test
+    void fullStoreStillOverwritesTheColdestMemory() {
+        MemoryStore store = new MemoryStore(20, 1);
+        for (int i = 0; i < 25; i++) {
+            store.add("memory " + i, new float[] { i, 1 });
+        }
+
+        assertEquals(20, store.size());
+        // memories 0 to 4 were the coldest when 20 to 24 arrived
+        List<String> kept = store.nearest(new Embedding(new float[] { 1, 0 }), 20);
+        assertFalse(kept.contains("memory 4"));
+        assertTrue(kept.containsAll(List.of("memory 5", "memory 24")));
+    }
+}
@@ -0,0 +1,47 @@
+package llm.primitives;
+
+import backend.Backends;
+import backend.LLMBackend;
+import backend.StubServer;
+import com.google.gson.JsonPrimitive;
+import llm.ChatSession;
+import ollama.OllamaClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nlogo.api.ExtensionException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LLMAskStructuredTest {
+    private final LLMBackend original = Backends.get();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        // whitespace only, then done; prompts starting with "fail" get a 500
+        server = new StubServer().on("/api/generate", body -> body.contains("\"prompt\":\"fail")
+                ? null
+                : List.of("{\"response\":\" \\n\"}", "{\"response\":\"\",\"done\":true}"));
+        Backends.set(new OllamaClient(server.url(), "unused"));
+    }
+
+    @AfterEach
+    void stop() {
+        Backends.set(original);
+        server.close();
+    }
+
+    @Test
+    void emptyOrFailedRepliesAreErrorsNotNobody() {
+        ChatSession session = new ChatSession("user");
+        JsonPrimitive format = new JsonPrimitive("json");
+
+        ExtensionException blank = assertThrows(ExtensionException.class,
+                () -> LLMAskStructured.askStructured(session, "answer", format));
+        assertEquals("model returned no JSON", blank.getMessage());
+        assertThrows(ExtensionException.class, () -> LLMAskStructured.askStructured(session, "fail", format));
+    }
+}
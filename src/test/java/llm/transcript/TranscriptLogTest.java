@@ -0,0 +1,48 @@
+package llm.transcript;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranscriptLogTest {
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void workspacesSharingADirectoryKeepSeparateFiles() throws Exception {
+        Path directory = Files.createTempDirectory("transcripts");
+        TranscriptLog first = new TranscriptLog();
+        TranscriptLog second = new TranscriptLog();
+        // started within the same second, into the same directory
+        first.start(directory.toFile(), false);
+        second.start(directory.toFile(), false);
+        first.turn(1, "turtle", "from first", "ok", 1, 0, 0, true);
+
+        // stopping one leaves the other running
+        second.stop();
+        assertTrue(first.isEnabled());
+        first.turn(1, "turtle", "still first", "ok", 1, 0, 0, true);
+        first.stop();
+
+        File[] files = directory.toFile().listFiles();
+        assertNotNull(files);
+        assertEquals(2, files.length);
+        List<String> contents = List.of(read(files[0]), read(files[1]));
+        String written = contents.get(0).isEmpty() ? contents.get(1) : contents.get(0);
+        assertTrue(contents.contains(""));
+        assertTrue(written.contains("from first"));
+        assertTrue(written.contains("still first"));
+        for (File file : files) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+}
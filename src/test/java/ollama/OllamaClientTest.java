@@ -0,0 +1,84 @@
+package ollama;
+
+import backend.StubServer;
+import backend.TokenSubscriber;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OllamaClientTest {
+    private static final List<String> GENERATE = Arrays.asList(
+            "{\"response\":\"Hel\",\"done\":false}",
+            "",
+            "{\"response\":\"lo\",\"done\":false}",
+            "{\"response\":\"\",\"done\":true,\"context\":[1,2,3]}");
+
+    private StubServer server;
+    private OllamaClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new StubServer()
+                .on("/api/generate", GENERATE)
+                .on("/api/embed", List.of("{\"embeddings\":[[1.0,0.0],[0.5,0.5]]}"))
+                .on("/api/version", List.of("{\"version\":\"0.0.0\"}"));
+        client = new OllamaClient(server.url() + "/", "stub-embed");
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void generateStreamsResponsesAndContext() throws Exception {
+        List<TokenData> tokens;
+        try (Stream<TokenData> stream = client.generate(new GenerateRequest("hi").setContext(new int[] { 7 }))) {
+            tokens = stream.collect(Collectors.toList());
+        }
+
+        assertEquals("Hello", tokens.stream().map(TokenData::getToken).collect(Collectors.joining()));
+        assertArrayEquals(new int[] { 1, 2, 3 }, tokens.get(tokens.size() - 1).getContext());
+        JsonObject sent = JsonParser.parseString(server.requests().get(0).body).getAsJsonObject();
+        assertEquals("hi", sent.get("prompt").getAsString());
+        assertEquals(7, sent.getAsJsonArray("context").get(0).getAsInt());
+    }
+
+    @Test
+    void generateAsyncPushesTheSameTokens() throws Exception {
+        List<String> tokens = new ArrayList<>();
+        TokenSubscriber.consume(client.generateAsync(new GenerateRequest("hi")), token -> tokens.add(token.getToken()))
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals("Hello", String.join("", tokens));
+    }
+
+    @Test
+    void embedSendsTheEmbeddingModel() throws Exception {
+        List<float[]> vectors = client.embed(List.of("a", "b"));
+
+        assertEquals(2, vectors.size());
+        assertArrayEquals(new float[] { 0.5f, 0.5f }, vectors.get(1));
+        JsonObject sent = JsonParser.parseString(server.requests().get(0).body).getAsJsonObject();
+        assertEquals("/api/embed", server.requests().get(0).path);
+        assertEquals("stub-embed", sent.get("model").getAsString());
+    }
+
+    @Test
+    void healthFollowsTheServer() {
+        assertTrue(client.isHealthy());
+        server.close();
+        assertFalse(client.isHealthy());
+    }
+}